@@ -0,0 +1,102 @@
+package com.shijingfeng.particle_engine
+
+/**
+ * Function: 别名表 (Walker/Vose Alias Method)
+ * Date: 2026/10/17 17:10
+ * Description: 按权重构建一次 (O(n)), 之后每次按权重随机抽取下标都是 O(1), 不需要遍历权重
+ * @author ShiJingFeng
+ */
+internal class AliasTable {
+
+    /** 每个格子保留自身下标的概率 */
+    private var mProbability = FloatArray(0)
+    /** 每个格子的别名下标 (未保留自身下标时取该下标) */
+    private var mAlias = IntArray(0)
+
+    /** 可抽取的下标数量 */
+    var size = 0
+        private set
+
+    /**
+     * 按权重构建别名表 (权重小于0按0处理, 权重总和为0时等概率)
+     *
+     * @param weights 权重列表
+     */
+    fun build(weights: IntArray) {
+        val size = weights.size
+        var total = 0L
+
+        for (weight in weights) {
+            total += weight.coerceAtLeast(0)
+        }
+        if (mProbability.size < size) {
+            mProbability = FloatArray(size)
+            mAlias = IntArray(size)
+        }
+        this.size = size
+        if (size == 0) {
+            return
+        }
+
+        // 缩放后的权重 (平均值为1)
+        val scaled = FloatArray(size) { i ->
+            if (total == 0L) 1F else weights[i].coerceAtLeast(0) * size.toFloat() / total
+        }
+        // 小于1 和 不小于1 的下标分别入栈
+        val small = IntArray(size)
+        val large = IntArray(size)
+        var smallCount = 0
+        var largeCount = 0
+
+        for (i in 0 until size) {
+            if (scaled[i] < 1F) {
+                small[smallCount++] = i
+            } else {
+                large[largeCount++] = i
+            }
+        }
+        // 每次用一个大格子补满一个小格子
+        while (smallCount > 0 && largeCount > 0) {
+            val less = small[--smallCount]
+            val more = large[--largeCount]
+
+            mProbability[less] = scaled[less]
+            mAlias[less] = more
+            scaled[more] = scaled[more] + scaled[less] - 1F
+            if (scaled[more] < 1F) {
+                small[smallCount++] = more
+            } else {
+                large[largeCount++] = more
+            }
+        }
+        // 剩余格子 (含浮点误差) 概率都为1
+        while (largeCount > 0) {
+            val index = large[--largeCount]
+
+            mProbability[index] = 1F
+            mAlias[index] = index
+        }
+        while (smallCount > 0) {
+            val index = small[--smallCount]
+
+            mProbability[index] = 1F
+            mAlias[index] = index
+        }
+    }
+
+    /**
+     * 按权重随机抽取一个下标
+     *
+     * @param random 随机数生成器
+     */
+    fun sample(random: ParticleRandom): Int {
+        if (size <= 1) {
+            return 0
+        }
+
+        val index = random.nextInt(size)
+
+        return if (random.nextFloat() < mProbability[index]) index else mAlias[index]
+    }
+
+}
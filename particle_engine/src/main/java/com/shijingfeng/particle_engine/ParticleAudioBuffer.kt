@@ -0,0 +1,190 @@
+package com.shijingfeng.particle_engine
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.sqrt
+
+/** 默认环形缓冲容量 (帧数) */
+private const val DEFAULT_AUDIO_BUFFER_CAPACITY = 4
+/** 8 位采样中心值 (Visualizer 波形为无符号 8 位) */
+private const val WAVEFORM_CENTER = 128
+/** 8 位采样最大振幅 */
+private const val WAVEFORM_MAX_AMPLITUDE = 128F
+/** FFT 单个频点最大幅值 (实部和虚部都为有符号 8 位) */
+private const val FFT_MAX_MAGNITUDE = 128F * 1.4142135F
+
+/**
+ * Function: 音频帧缓冲 (单生产者, 无锁)
+ * Date: 2026/10/17 18:30
+ * Description: 生产者线程 (例如 Visualizer 回调或解码线程) 调用 push 写入 振幅 / 频段 帧,
+ * 粒子模拟线程每次步进前读取最新一帧. 两端都不加锁也不分配内存:
+ * 生产者先写入槽位再发布写入计数, 读取方复制最新槽位后检查该槽位是否已被覆盖, 被覆盖时重试.
+ * 槽位内容按 volatile 读写 (不能只在写入计数上建立顺序, 否则读取方对槽位的普通读取可能被重排到再次检查写入计数之后,
+ * 读到一半被覆盖的帧也能通过检查), 所有读写处于同一个全局顺序中, 再次检查写入计数时可以确定复制到的数据没有被覆盖.
+ * 只允许一个生产者线程, 读取方不修改缓冲状态, 因此可以被多个 View 同时读取.
+ * @author ShiJingFeng
+ */
+class ParticleAudioBuffer @JvmOverloads constructor(
+    /** 频段数量 (0 表示只有振幅) */
+    val bandCount: Int = 0,
+    /** 环形缓冲容量 (帧数, 至少为 2) */
+    capacity: Int = DEFAULT_AUDIO_BUFFER_CAPACITY
+) {
+
+    /** 环形缓冲容量 */
+    private val mCapacity = capacity.coerceAtLeast(2)
+    /** 每个槽位的长度 (振幅 + 频段能量) */
+    private val mSlotSize = bandCount + 1
+    /** 每个槽位的 振幅 [0, 1] 和 频段能量 [0, 1] (Float 的位表示, 槽位 * 槽位长度 + 0 为振幅, + 1 + 频段 为频段能量) */
+    private val mSlots = AtomicIntegerArray(mCapacity * mSlotSize)
+    /** 已写入帧数 (只由生产者递增, 写入槽位后再发布) */
+    private val mWriteCount = AtomicLong(0L)
+
+    init {
+        require(bandCount >= 0) { "bandCount must not be negative" }
+    }
+
+    /**
+     * 写入一帧 (生产者线程调用)
+     *
+     * @param amplitude 振幅 [0, 1]
+     * @param bands 频段能量 [0, 1] (长度不少于 bandOffset + bandCount), 为 null 时频段全部为 0
+     * @param bandOffset 频段数据起始位置
+     */
+    @JvmOverloads
+    fun push(amplitude: Float, bands: FloatArray? = null, bandOffset: Int = 0) {
+        val count = mWriteCount.get()
+        val slotOffset = (count % mCapacity).toInt() * mSlotSize
+
+        writeSlot(slotOffset, amplitude.coerceIn(0F, 1F))
+        for (band in 0 until bandCount) {
+            writeSlot(slotOffset + 1 + band, if (bands == null) 0F else bands[bandOffset + band].coerceIn(0F, 1F))
+        }
+        // 槽位内容先于写入计数对读取方可见
+        mWriteCount.set(count + 1)
+    }
+
+    /**
+     * 写入一帧 Visualizer 波形 (无符号 8 位), 振幅取均方根, 频段全部为 0 (生产者线程调用)
+     *
+     * @param waveform 波形数据 (Visualizer.getWaveForm / onWaveFormDataCapture)
+     */
+    fun pushWaveform(waveform: ByteArray) {
+        if (waveform.isEmpty()) {
+            return
+        }
+
+        var sum = 0F
+
+        for (sample in waveform) {
+            val value = ((sample.toInt() and 0xFF) - WAVEFORM_CENTER) / WAVEFORM_MAX_AMPLITUDE
+
+            sum += value * value
+        }
+        push(sqrt(sum / waveform.size))
+    }
+
+    /**
+     * 写入一帧 Visualizer FFT 数据, 频点按顺序平均分到各个频段, 振幅取所有频段的平均值 (生产者线程调用)
+     * 数据格式为 [Rf0, Rf(n/2), Rf1, If1, Rf2, If2, ...], 忽略直流和奈奎斯特频点
+     *
+     * @param fft FFT 数据 (Visualizer.getFft / onFftDataCapture)
+     */
+    fun pushFft(fft: ByteArray) {
+        val binCount = fft.size / 2 - 1
+
+        if (bandCount == 0 || binCount < bandCount) {
+            return
+        }
+
+        val count = mWriteCount.get()
+        val slotOffset = (count % mCapacity).toInt() * mSlotSize
+        var total = 0F
+
+        for (band in 0 until bandCount) {
+            // 频段包含的频点范围 [startBin, endBin), 频点从 1 开始
+            val startBin = 1 + band * binCount / bandCount
+            val endBin = 1 + (band + 1) * binCount / bandCount
+            var sum = 0F
+
+            for (bin in startBin until endBin) {
+                val real = fft[bin * 2].toFloat()
+                val imaginary = fft[bin * 2 + 1].toFloat()
+
+                sum += sqrt(real * real + imaginary * imaginary)
+            }
+
+            val energy = (sum / (endBin - startBin) / FFT_MAX_MAGNITUDE).coerceIn(0F, 1F)
+
+            writeSlot(slotOffset + 1 + band, energy)
+            total += energy
+        }
+        writeSlot(slotOffset, total / bandCount)
+        mWriteCount.set(count + 1)
+    }
+
+    /**
+     * 读取最新一帧 (读取线程调用, 不阻塞)
+     *
+     * @param frame 读取结果
+     * @return 是否读取到新的一帧 (没有新帧或连续被覆盖时返回 false, frame 保持不变)
+     */
+    internal fun readLatest(frame: ParticleAudioFrame): Boolean {
+        var attempt = 0
+
+        while (attempt++ < mCapacity) {
+            val count = mWriteCount.get()
+
+            if (count == 0L || count == frame.sequence) {
+                return false
+            }
+
+            val slotOffset = ((count - 1) % mCapacity).toInt() * mSlotSize
+            val bandCount = bandCount.coerceAtMost(frame.bands.size)
+            val amplitude = readSlot(slotOffset)
+
+            for (band in 0 until bandCount) {
+                frame.bands[band] = readSlot(slotOffset + 1 + band)
+            }
+            // 复制期间生产者最多写到第 count + capacity - 2 帧时该槽位仍然完整, 否则可能读到一半被覆盖的数据
+            if (mWriteCount.get() - count < mCapacity - 1) {
+                frame.amplitude = amplitude
+                frame.sequence = count
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * 写入槽位中的一个值 (生产者线程调用)
+     *
+     * @param index 下标
+     * @param value 值
+     */
+    private fun writeSlot(index: Int, value: Float) = mSlots.set(index, value.toRawBits())
+
+    /**
+     * 读取槽位中的一个值
+     *
+     * @param index 下标
+     */
+    private fun readSlot(index: Int) = Float.fromBits(mSlots.get(index))
+
+}
+
+/**
+ * 音频帧 (读取方持有, 用于接收 [ParticleAudioBuffer.readLatest] 的结果)
+ */
+internal class ParticleAudioFrame(bandCount: Int) {
+
+    /** 振幅 [0, 1] */
+    var amplitude = 0F
+
+    /** 频段能量 [0, 1] */
+    val bands = FloatArray(bandCount)
+
+    /** 帧序号 (缓冲的写入计数, 0 表示还没有读取过) */
+    var sequence = 0L
+
+}
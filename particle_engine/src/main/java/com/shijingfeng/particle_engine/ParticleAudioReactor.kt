@@ -0,0 +1,120 @@
+package com.shijingfeng.particle_engine
+
+import kotlin.math.pow
+
+/** 静音时的发射比例 (每步死亡粒子中重新发射的比例) */
+private const val MIN_EMISSION_SCALE = 0.2F
+/** 静音时的速度比例 */
+private const val MIN_SPEED_SCALE = 0.5F
+/** 满振幅时在最小速度比例基础上增加的速度比例 */
+private const val SPEED_GAIN = 1.5F
+/** 满低频能量时增加的发射扩散比例 */
+private const val SPREAD_GAIN = 2F
+/** 音量上升时的平滑系数 (每个参考时间间隔向目标值靠近的比例, 越大响应越快) */
+private const val ATTACK_FACTOR = 0.5F
+/** 音量下降时的平滑系数 */
+private const val RELEASE_FACTOR = 0.08F
+/** 平滑系数对应的参考时间间隔 (秒, 按 60Hz 每帧更新一次标定, 其他刷新率按实际间隔换算) */
+private const val REFERENCE_INTERVAL_SECONDS = 1F / 60F
+/** 两次更新的最大时间间隔 (秒), 暂停后恢复时不会按整个暂停时间平滑 */
+private const val MAX_INTERVAL_SECONDS = 0.25F
+/** 纳秒转秒 */
+private const val NANOS_PER_SECOND = 1_000_000_000F
+
+/**
+ * Function: 粒子音频响应器
+ * Date: 2026/10/17 18:30
+ * Description: 每次模拟步进前从 [ParticleAudioBuffer] 读取最新一帧, 平滑后映射为粒子发射比例, 速度比例和扩散比例.
+ * 振幅控制发射比例和速度, 低频 (前一半频段, 没有频段时使用振幅) 控制扩散. 只能在模拟线程中使用.
+ * @author ShiJingFeng
+ */
+class ParticleAudioReactor {
+
+    /** 读取缓冲 (频段数量变化时重新分配) */
+    private var mFrame = ParticleAudioFrame(0)
+    /** 上一次读取的缓冲 (换缓冲后帧序号重新计算) */
+    private var mBuffer: ParticleAudioBuffer? = null
+    /** 平滑后的振幅 */
+    private var mLevel = 0F
+    /** 平滑后的低频能量 */
+    private var mBass = 0F
+    /** 上一次更新的帧时间戳 (纳秒, 0 表示还没有更新过) */
+    private var mLastFrameTimeNanos = 0L
+
+    /**
+     * 读取最新音频帧并调制粒子引擎
+     *
+     * @param buffer 音频帧缓冲
+     * @param engine 粒子引擎
+     * @param frameTimeNanos 帧时间戳 (纳秒, 平滑按和上一次更新的时间间隔计算, 响应速度和刷新率无关)
+     */
+    fun update(buffer: ParticleAudioBuffer, engine: ParticleEngine, frameTimeNanos: Long) {
+        if (buffer !== mBuffer) {
+            mBuffer = buffer
+            mFrame = ParticleAudioFrame(buffer.bandCount)
+        }
+
+        val frame = mFrame
+
+        // 没有新帧时沿用上一帧的目标值继续平滑
+        buffer.readLatest(frame)
+
+        val amplitude = frame.amplitude
+        val bandCount = frame.bands.size
+        val bassBandCount = (bandCount + 1) / 2
+        var bass = amplitude
+
+        if (bassBandCount > 0) {
+            bass = 0F
+            for (band in 0 until bassBandCount) {
+                bass += frame.bands[band]
+            }
+            bass /= bassBandCount
+        }
+
+        val deltaTime = if (mLastFrameTimeNanos == 0L) {
+            REFERENCE_INTERVAL_SECONDS
+        } else {
+            ((frameTimeNanos - mLastFrameTimeNanos) / NANOS_PER_SECOND).coerceIn(0F, MAX_INTERVAL_SECONDS)
+        }
+
+        mLastFrameTimeNanos = frameTimeNanos
+        mLevel = smooth(mLevel, amplitude, deltaTime)
+        mBass = smooth(mBass, bass, deltaTime)
+        engine.setModulation(
+            MIN_EMISSION_SCALE + (1F - MIN_EMISSION_SCALE) * mLevel,
+            MIN_SPEED_SCALE + SPEED_GAIN * mLevel,
+            1F + SPREAD_GAIN * mBass
+        )
+    }
+
+    /**
+     * 取消调制 (恢复粒子引擎默认效果, 没有调制过时不做任何事)
+     *
+     * @param engine 粒子引擎
+     */
+    fun detach(engine: ParticleEngine) {
+        if (mBuffer == null) {
+            return
+        }
+        mBuffer = null
+        mLevel = 0F
+        mBass = 0F
+        mLastFrameTimeNanos = 0L
+        engine.setModulation(1F, 1F, 1F)
+    }
+
+    /**
+     * 快升慢降平滑 (指数平滑, 按时间间隔换算系数: 两次 1/120 秒的更新和一次 1/60 秒的更新结果相同)
+     *
+     * @param current 当前值
+     * @param target 目标值
+     * @param deltaTime 和上一次更新的时间间隔 (秒)
+     */
+    private fun smooth(current: Float, target: Float, deltaTime: Float): Float {
+        val factor = if (target > current) ATTACK_FACTOR else RELEASE_FACTOR
+
+        return current + (target - current) * (1F - (1F - factor).pow(deltaTime / REFERENCE_INTERVAL_SECONDS))
+    }
+
+}
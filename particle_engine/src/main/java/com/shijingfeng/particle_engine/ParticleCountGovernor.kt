@@ -0,0 +1,89 @@
+package com.shijingfeng.particle_engine
+
+/** 默认滑动窗口大小 (帧数) */
+private const val DEFAULT_WINDOW_SIZE = 30
+/** 平均耗时低于目标耗时的该比例时才增加粒子 (留出余量, 防止来回抖动) */
+private const val GROW_THRESHOLD = 0.75F
+/** 每次增加粒子的比例 */
+private const val GROW_FACTOR = 1.1F
+/** 减少粒子时在按比例估算的基础上再多减少一点, 尽快回到预算以内 */
+private const val SHRINK_MARGIN = 0.95F
+
+/**
+ * Function: 粒子数量调节器
+ * Date: 2026/10/17 16:05
+ * Description: 在滑动窗口内统计每帧 (模拟 + 绘制) 耗时, 窗口填满后和目标耗时比较,
+ * 超出预算时按比例减少粒子, 余量充足时逐步增加粒子, 结果限制在 [minCount, maxCount] 内.
+ * 每次调整后清空窗口, 用新的粒子数量重新统计.
+ * @author ShiJingFeng
+ */
+class ParticleCountGovernor(
+    /** 滑动窗口大小 (帧数) */
+    windowSize: Int = DEFAULT_WINDOW_SIZE
+) {
+
+    /** 每帧耗时采样 (纳秒, 环形存储) */
+    private val mSamples = LongArray(windowSize)
+    /** 下一个采样写入位置 */
+    private var mSampleIndex = 0
+    /** 当前窗口内的采样数量 */
+    private var mSampleCount = 0
+    /** 当前窗口内的耗时总和 (纳秒) */
+    private var mSampleSum = 0L
+
+    /** 最小粒子数量 */
+    var minCount = 0
+    /** 最大粒子数量 */
+    var maxCount = Int.MAX_VALUE
+    /** 目标每帧耗时 (纳秒) */
+    var targetFrameTimeNanos = 0L
+
+    /**
+     * 记录一帧耗时, 并返回调整后的粒子数量
+     *
+     * @param frameTimeNanos 本帧 (模拟 + 绘制) 耗时 (纳秒)
+     * @param currentCount 当前粒子数量
+     * @return 调整后的粒子数量 (不需要调整时返回 currentCount)
+     */
+    fun record(frameTimeNanos: Long, currentCount: Int): Int {
+        val windowSize = mSamples.size
+
+        if (mSampleCount == windowSize) {
+            mSampleSum -= mSamples[mSampleIndex]
+        } else {
+            ++mSampleCount
+        }
+        mSamples[mSampleIndex] = frameTimeNanos
+        mSampleSum += frameTimeNanos
+        mSampleIndex = (mSampleIndex + 1) % windowSize
+
+        // 窗口未填满时不调整
+        if (mSampleCount < windowSize || targetFrameTimeNanos <= 0L) {
+            return currentCount.coerceIn(minCount, maxCount)
+        }
+
+        val average = mSampleSum / windowSize
+        val count = when {
+            // 超出预算: 耗时近似和粒子数量成正比, 按比例减少
+            average > targetFrameTimeNanos -> (currentCount * (targetFrameTimeNanos.toFloat() / average) * SHRINK_MARGIN).toInt()
+            // 余量充足: 逐步增加
+            average < targetFrameTimeNanos * GROW_THRESHOLD -> (currentCount * GROW_FACTOR).toInt() + 1
+            else -> currentCount
+        }.coerceIn(minCount, maxCount)
+
+        if (count != currentCount) {
+            reset()
+        }
+        return count
+    }
+
+    /**
+     * 清空窗口
+     */
+    fun reset() {
+        mSampleIndex = 0
+        mSampleCount = 0
+        mSampleSum = 0L
+    }
+
+}
@@ -0,0 +1,1187 @@
+package com.shijingfeng.particle_engine
+
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.math.PI
+import kotlin.math.ceil
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/** 比例基准值 */
+private const val SCALE_BASE_VALUE = 1F / 1000F
+/** 默认粒子半径大小比例值 */
+private const val DEFAULT_PARTICLE_RADIUS_SCALE_VALUE = 1.7F * SCALE_BASE_VALUE
+/** 粒子最慢速度大小比例值 (每秒移动距离, 相当于 60Hz 下每帧移动 1.5‰) */
+private const val DEFAULT_PARTICLE_SLOWEST_SPEED_SCALE_VALUE = 1.5F * SCALE_BASE_VALUE * 60F
+
+/** 默认粒子颜色 白色 */
+private const val DEFAULT_PARTICLE_COLOR = -0x1
+
+/** 粒子数量 */
+const val PARTICLE_NUMBER = 2000
+
+/** 发射环查找表分辨率 (发射环上的采样点数量, 自定义发射形状默认也按该数量采样) */
+const val EMITTER_TABLE_SIZE = 1024
+
+/** 模拟固定步长 (秒) */
+private const val SIMULATION_STEP_SECONDS = 1F / 60F
+/** 单帧最大累计时间 (秒), 防止长时间卡顿后一次性追赶过多步数 */
+private const val MAX_FRAME_TIME_SECONDS = 0.25F
+/** 纳秒转秒 */
+private const val NANOS_PER_SECOND = 1_000_000_000F
+
+/** 默认并行模拟阈值 (活跃粒子数量不少于该值时并行模拟) */
+const val DEFAULT_PARALLEL_THRESHOLD = 20_000
+/**
+ * 分块大小 (粒子数量). 分块方式只和粒子数量有关, 和线程数量无关, 单线程和并行模拟按同样的分块使用同样的随机数, 结果逐位一致.
+ * 分块足够大, 相邻分块只在边界处可能写入同一缓存行, 伪共享的影响可以忽略
+ */
+private const val CHUNK_SIZE = 2048
+
+/** 保存状态格式版本 */
+private const val STATE_VERSION: Short = 3
+/**
+ * 保存状态头部长度 (版本, 粒子数量, 标志位, 尺寸, 扩散圆(内圆)半径, 坐标范围 左 上 右 下;
+ * Float 字段拆为两个 Short)
+ */
+private const val STATE_HEADER_SIZE = 15
+/** 保存状态标志位: 保存时使用自定义发射形状 */
+private const val STATE_FLAG_CUSTOM_EMITTER = 1
+/** 保存状态中每个粒子的字段数量 (X, Y, 速度, 当前移动距离, 最大移动距离, 方向X, 方向Y, 颜色下标) */
+private const val STATE_FIELDS_PER_PARTICLE = 8
+/** 保存状态量化级数 (每个字段量化为 16 位无符号整数) */
+private const val STATE_QUANTIZATION_LEVEL = 65535F
+/** 保存状态中坐标范围的最小宽高 (所有粒子坐标相同时避免除以 0) */
+private const val STATE_MIN_POSITION_RANGE = 1F
+/** 保存状态中 速度 和 移动距离 相对尺寸的最大比例 */
+private const val STATE_LENGTH_MAX = 1F
+
+/**
+ * 按发射环面积和粒子密度计算粒子数量 (尺寸越小粒子越少, 避免小尺寸下大量粒子重叠成亚像素噪点)
+ *
+ * @param size 尺寸大小
+ * @param innerCircleRadius 扩散圆(内圆) 半径
+ * @param density 粒子密度 (每平方像素的粒子数量)
+ * @param maxCount 粒子数量上限
+ * @return 粒子数量, 范围 [0, maxCount]
+ */
+fun getParticleCountForRing(size: Float, innerCircleRadius: Float, density: Float, maxCount: Int): Int {
+    val outerRadius = size / 2
+    val innerRadius = innerCircleRadius.coerceIn(0F, outerRadius.coerceAtLeast(0F))
+    // 粒子在内圆和外圆之间的圆环内运动
+    val ringArea = PI.toFloat() * (outerRadius * outerRadius - innerRadius * innerRadius)
+
+    if (ringArea <= 0F || density <= 0F) {
+        return 0
+    }
+    return (ringArea * density).toInt().coerceIn(0, maxCount.coerceAtLeast(0))
+}
+
+/**
+ * Function: 粒子扩散引擎
+ * Date: 2026/10/17 14:20
+ * Description: 持有粒子状态(结构数组)和发射环查找表, 按固定步长模拟, 并把插值结果发布为绘制快照.
+ * 纯 JVM 实现, 不依赖 Android, 由 ParticleDiffuseView 和 ParticleDiffuseSurfaceView 共用, 也可以直接在 JVM 单元测试和基准测试中运行.
+ * 初始化和模拟步进可以在不同线程调用 (内部互斥), 绘制方只通过 [acquireSnapshot] 无锁读取.
+ * @author ShiJingFeng
+ */
+class ParticleEngine(
+    /** 粒子容量 (可以通过 [ensureCapacity] 扩大) */
+    capacity: Int
+) {
+
+    /** 模拟锁 (只用于保护初始化和模拟步进互斥, 绘制不需要获取) */
+    private val mLock = Any()
+
+    /** 随机数生成器 (热路径使用, 不需要同步, 受 mLock 保护) */
+    private var mRandom: ParticleRandom = XoRoShiRo128PlusRandom()
+
+    /** 粒子 X轴坐标 (结构数组存储, 下标即粒子序号) */
+    private var mParticleX = FloatArray(capacity)
+    /** 粒子 Y轴坐标 */
+    private var mParticleY = FloatArray(capacity)
+    /** 粒子上一步模拟的 X轴坐标 (用于插值) */
+    private var mParticlePreviousX = FloatArray(capacity)
+    /** 粒子上一步模拟的 Y轴坐标 (用于插值) */
+    private var mParticlePreviousY = FloatArray(capacity)
+    /** 粒子速度 (像素/秒) */
+    private var mParticleSpeed = FloatArray(capacity)
+    /** 粒子当前移动距离 */
+    private var mParticleOffset = FloatArray(capacity)
+    /** 粒子最大移动距离 */
+    private var mParticleMaxOffset = FloatArray(capacity)
+    /** 粒子发散方向 X轴分量 (出生时从发射环查找表中取得的单位向量) */
+    private var mParticleDirectionX = FloatArray(capacity)
+    /** 粒子发散方向 Y轴分量 */
+    private var mParticleDirectionY = FloatArray(capacity)
+    /** 粒子颜色下标 (对应颜色列表的下标, 出生时按权重抽取) */
+    private var mParticleColorIndex = IntArray(capacity)
+    /** 颜色列表 (每次设置时整体替换, 不修改内容, 因此可以直接被快照引用) */
+    private var mColors = intArrayOf(DEFAULT_PARTICLE_COLOR)
+    /** 颜色权重别名表 */
+    private val mColorAliasTable = AliasTable()
+    /** 粒子容量 */
+    var capacity = capacity
+        private set
+    /** 活跃粒子数量 (下标 [0, activeCount) 的粒子参与模拟和绘制) */
+    var activeCount = capacity
+        private set
+
+    /** 发射环查找表 X轴坐标 (尺寸变化时采样一次) */
+    private var mEmitterX = FloatArray(EMITTER_TABLE_SIZE)
+    /** 发射环查找表 Y轴坐标 */
+    private var mEmitterY = FloatArray(EMITTER_TABLE_SIZE)
+    /** 发射环查找表 向外发散方向单位向量 X轴分量 */
+    private var mEmitterDirectionX = FloatArray(EMITTER_TABLE_SIZE)
+    /** 发射环查找表 向外发散方向单位向量 Y轴分量 */
+    private var mEmitterDirectionY = FloatArray(EMITTER_TABLE_SIZE)
+    /** 发射环查找表 采样点数量 */
+    private var mEmitterCount = EMITTER_TABLE_SIZE
+    /** 是否使用自定义发射形状 (为 false 时发射形状为扩散圆(内圆)) */
+    private var mCustomEmitter = false
+    /** 自定义发射形状 原始 X轴坐标 (尺寸变化时按比例缩放后写入查找表) */
+    private var mEmitterShapeX = FloatArray(0)
+    /** 自定义发射形状 原始 Y轴坐标 */
+    private var mEmitterShapeY = FloatArray(0)
+    /** 自定义发射形状 原始坐标对应的尺寸 (0 表示以第一次初始化的尺寸为准) */
+    private var mEmitterShapeSize = 0F
+
+    /** 模拟方正在写入的快照 (只由模拟方访问) */
+    private var mBackSnapshot = ParticleSnapshot(capacity)
+    /** 已发布的最新快照 (模拟方和绘制方通过原子交换传递, 无锁) */
+    private val mPublishedSnapshot = AtomicReference(ParticleSnapshot(capacity))
+    /** 绘制方正在读取的快照 (只由绘制线程访问) */
+    private var mFrontSnapshot = ParticleSnapshot(capacity)
+    /** 快照发布序号 */
+    private var mSnapshotSequence = 0L
+    /** 累计重生的粒子数量 (随快照发布, 绘制方按两次快照的差值统计) */
+    private var mTotalRespawnCount = 0L
+    /** 最新发布快照中可见粒子的包围盒 (含粒子半径, left > right 表示没有可见粒子) */
+    private val mBounds = floatArrayOf(0F, 0F, -1F, -1F)
+
+    /** 并行模拟线程池 */
+    private val mParallelPool = ForkJoinPool.commonPool()
+    /** 并行模拟分块任务 (每步重新初始化后复用) */
+    private var mChunkTasks = arrayOfNulls<ChunkTask>(0)
+    /** 每个分块独立的随机数生成器 (分块下标固定对应, 结果和线程调度无关; 重新设置种子后由主随机数生成器重新派生) */
+    private var mChunkRandoms = arrayOfNulls<ParticleRandom>(0)
+    /** 并行模拟根任务 */
+    private val mParallelTask = ParallelTask()
+    /** 本步分块数量 */
+    private var mChunkCount = 0
+    /** 单线程插值时的包围盒 (复用, 避免重复创建) */
+    private val mRangeBounds = FloatArray(4)
+
+    /** 并行模拟阈值 (活跃粒子数量不少于该值时把粒子分块在 ForkJoinPool 中并行模拟, Int.MAX_VALUE 表示总是单线程) */
+    var parallelThreshold = DEFAULT_PARALLEL_THRESHOLD
+        set(parallelThreshold) = synchronized(mLock) {
+            field = parallelThreshold.coerceAtLeast(1)
+        }
+
+    /** 发射比例 (每步死亡粒子中重新发射的比例 (0, 1], 其余粒子保持透明等待下一步) */
+    private var mEmissionScale = 1F
+    /** 速度比例 */
+    private var mSpeedScale = 1F
+    /** 发射扩散比例 (出生位置随机偏移量的倍数) */
+    private var mSpreadScale = 1F
+
+    /** 上一帧的时间戳 (纳秒, 0 表示还没有收到第一帧) */
+    private var mLastFrameTimeNanos = 0L
+    /** 尚未模拟的累计时间 (秒) */
+    private var mAccumulatedTime = 0F
+
+    /** 尺寸大小 (宽和高取最小作为尺寸大小) */
+    var size = 0F
+        private set
+    /** 扩散圆(内圆) 半径 */
+    var innerCircleRadius = 0F
+        private set
+    /** 外圆半径 减去 扩展圆(内圆)半径 */
+    var ringThickness = 0F
+        private set
+    /** 粒子半径 */
+    var particleRadius = 0F
+        private set
+    /** 粒子最慢速度 (像素/秒) */
+    var particleSlowestSpeed = 0F
+        private set
+
+    /**
+     * 按尺寸初始化 (采样发射环, 重置所有粒子)
+     *
+     * @param size 尺寸大小
+     * @param innerCircleRadius 扩散圆(内圆) 半径
+     */
+    fun setup(size: Float, innerCircleRadius: Float) = synchronized(mLock) {
+        this.size = size
+        this.innerCircleRadius = innerCircleRadius
+        ringThickness = size / 2 - innerCircleRadius
+        particleRadius = DEFAULT_PARTICLE_RADIUS_SCALE_VALUE * size
+        particleSlowestSpeed = DEFAULT_PARTICLE_SLOWEST_SPEED_SCALE_VALUE * size
+        // 还没有尺寸 (例如 GONE 状态下布局) 时只记录尺寸, 不生成粒子
+        if (size <= 0F || ringThickness < 1F) {
+            return@synchronized
+        }
+
+        initEmitterTable()
+        for (i in 0 until activeCount) {
+            // 粒子沿发射环均匀分布, 并直接处于稳定状态 (第一帧就是扩散开的效果, 不需要延迟刷新)
+            spawnParticle(i, (i.toLong() * mEmitterCount / activeCount).toInt(), mRandom)
+            settleParticle(i)
+        }
+        mLastFrameTimeNanos = 0L
+        mAccumulatedTime = 0F
+        interpolateParticle(0F)
+    }
+
+    /**
+     * 把粒子状态保存为紧凑的 Short 数组 (例如写入 Bundle, 每个粒子 16 字节), 粒子数量超过上限时等间隔抽取.
+     * 坐标按保存的粒子实际所在范围量化为 16 位 (自定义发射形状使用 View 坐标系, 可能远超出 [0, 尺寸]),
+     * 速度和移动距离按相对尺寸的比例量化为 16 位, 恢复时按新尺寸还原
+     *
+     * @param maxCount 最多保存的粒子数量
+     * @return 保存的状态, 还没有初始化时返回 null
+     */
+    fun saveState(maxCount: Int): ShortArray? = synchronized(mLock) {
+        if (size <= 0F || ringThickness < 1F) {
+            return@synchronized null
+        }
+
+        val count = minOf(activeCount, maxCount.coerceIn(0, Short.MAX_VALUE.toInt()))
+        val state = ShortArray(STATE_HEADER_SIZE + count * STATE_FIELDS_PER_PARTICLE)
+        var left = 0F
+        var top = 0F
+        var right = 0F
+        var bottom = 0F
+        var position = STATE_HEADER_SIZE
+
+        for (i in 0 until count) {
+            val index = (i.toLong() * activeCount / count).toInt()
+            val x = mParticleX[index]
+            val y = mParticleY[index]
+
+            if (i == 0 || x < left) left = x
+            if (i == 0 || y < top) top = y
+            if (i == 0 || x > right) right = x
+            if (i == 0 || y > bottom) bottom = y
+        }
+        right = maxOf(right, left + STATE_MIN_POSITION_RANGE)
+        bottom = maxOf(bottom, top + STATE_MIN_POSITION_RANGE)
+        state[0] = STATE_VERSION
+        state[1] = count.toShort()
+        state[2] = (if (mCustomEmitter) STATE_FLAG_CUSTOM_EMITTER else 0).toShort()
+        putStateFloat(state, 3, size)
+        putStateFloat(state, 5, innerCircleRadius)
+        putStateFloat(state, 7, left)
+        putStateFloat(state, 9, top)
+        putStateFloat(state, 11, right)
+        putStateFloat(state, 13, bottom)
+        for (i in 0 until count) {
+            // 等间隔抽取 (初始化时粒子下标和发射位置相关, 不能只取前面的粒子)
+            val index = (i.toLong() * activeCount / count).toInt()
+
+            state[position++] = quantize(mParticleX[index], left, right)
+            state[position++] = quantize(mParticleY[index], top, bottom)
+            state[position++] = quantize(mParticleSpeed[index] / size, 0F, STATE_LENGTH_MAX)
+            state[position++] = quantize(mParticleOffset[index] / size, 0F, STATE_LENGTH_MAX)
+            state[position++] = quantize(mParticleMaxOffset[index] / size, 0F, STATE_LENGTH_MAX)
+            state[position++] = quantize(mParticleDirectionX[index], -1F, 1F)
+            state[position++] = quantize(mParticleDirectionY[index], -1F, 1F)
+            state[position++] = mParticleColorIndex[index].toShort()
+        }
+        return@synchronized state
+    }
+
+    /**
+     * 按新尺寸初始化, 并用保存的状态覆盖对应粒子, 不足的粒子按 [setup] 生成.
+     * 从扩散圆(内圆) 发射时, 粒子到中心的距离按 保存时 和 现在 的扩散圆(内圆)半径和圆环厚度径向映射
+     * (半径和尺寸的比例不变时等同于按尺寸等比缩放), 移动距离和速度按圆环厚度的比例缩放, 粒子剩余寿命不变.
+     * 保存时或现在使用自定义发射形状时径向映射没有意义, 和 [resize] 一样按尺寸等比缩放
+     *
+     * @param state [saveState] 保存的状态
+     * @param size 尺寸大小
+     * @param innerCircleRadius 扩散圆(内圆) 半径
+     * @return 是否恢复成功 (状态无效或尺寸无效时返回 false, 此时等同于 [setup])
+     */
+    fun restoreState(state: ShortArray, size: Float, innerCircleRadius: Float): Boolean = synchronized(mLock) {
+        setup(size, innerCircleRadius)
+        if (this.size <= 0F || ringThickness < 1F || state.size < STATE_HEADER_SIZE || state[0] != STATE_VERSION) {
+            return@synchronized false
+        }
+
+        val savedCount = state[1].toInt()
+        val savedCustomEmitter = state[2].toInt() and STATE_FLAG_CUSTOM_EMITTER != 0
+        val savedSize = getStateFloat(state, 3)
+        val savedRadius = getStateFloat(state, 5)
+        val left = getStateFloat(state, 7)
+        val top = getStateFloat(state, 9)
+        val right = getStateFloat(state, 11)
+        val bottom = getStateFloat(state, 13)
+        val savedRingThickness = savedSize / 2 - savedRadius
+
+        if (savedCount < 0 || state.size < STATE_HEADER_SIZE + savedCount * STATE_FIELDS_PER_PARTICLE
+            || !(savedSize > 0F) || !(savedRingThickness >= 1F) || !(left < right) || !(top < bottom)) {
+            return@synchronized false
+        }
+
+        val uniform = savedCustomEmitter || mCustomEmitter
+        // 移动距离和速度的缩放比例 (径向映射时为圆环厚度比例)
+        val lengthScale = if (uniform) size / savedSize else ringThickness / savedRingThickness
+        val savedCenter = savedSize / 2F
+        val center = size / 2F
+        val count = minOf(savedCount, activeCount)
+        val colorCount = mColors.size
+        var position = STATE_HEADER_SIZE
+
+        for (i in 0 until count) {
+            // 保存时已等间隔抽取, 恢复时同样等间隔分布, 其余粒子保持 setup 生成的稳定状态
+            val index = (i.toLong() * activeCount / count).toInt()
+            val savedX = dequantize(state[position], left, right)
+            val savedY = dequantize(state[position + 1], top, bottom)
+            val colorIndex = state[position + 7].toInt()
+
+            if (uniform) {
+                mParticleX[index] = savedX * lengthScale
+                mParticleY[index] = savedY * lengthScale
+            } else {
+                val deltaX = savedX - savedCenter
+                val deltaY = savedY - savedCenter
+                val distance = sqrt(deltaX * deltaX + deltaY * deltaY)
+                // 内圆以内保持等比缩放, 内圆以外按圆环厚度比例映射
+                val radialScale = if (distance > savedRadius) {
+                    (innerCircleRadius + (distance - savedRadius) * lengthScale) / distance
+                } else {
+                    innerCircleRadius / savedRadius.coerceAtLeast(1F)
+                }
+
+                mParticleX[index] = center + deltaX * radialScale
+                mParticleY[index] = center + deltaY * radialScale
+            }
+            mParticleSpeed[index] = dequantize(state[position + 2], 0F, STATE_LENGTH_MAX) * savedSize * lengthScale
+            mParticleOffset[index] = dequantize(state[position + 3], 0F, STATE_LENGTH_MAX) * savedSize * lengthScale
+            mParticleMaxOffset[index] = dequantize(state[position + 4], 0F, STATE_LENGTH_MAX) * savedSize * lengthScale
+            mParticleDirectionX[index] = dequantize(state[position + 5], -1F, 1F)
+            mParticleDirectionY[index] = dequantize(state[position + 6], -1F, 1F)
+            mParticlePreviousX[index] = mParticleX[index]
+            mParticlePreviousY[index] = mParticleY[index]
+            // 颜色列表可能已经变化
+            mParticleColorIndex[index] = if (colorIndex in 0 until colorCount) colorIndex else mColorAliasTable.sample(mRandom)
+            position += STATE_FIELDS_PER_PARTICLE
+        }
+        interpolateParticle(0F)
+        return@synchronized true
+    }
+
+    /**
+     * 尺寸变化时按比例缩放已有粒子状态 (不重置粒子, 只重新采样发射环)
+     * 还没有初始化时等同于 [setup]
+     *
+     * @param size 新的尺寸大小
+     * @param innerCircleRadius 新的扩散圆(内圆) 半径
+     */
+    fun resize(size: Float, innerCircleRadius: Float) = synchronized(mLock) {
+        if (this.size <= 0F || this.ringThickness < 1F || size <= 0F) {
+            setup(size, innerCircleRadius)
+            return@synchronized
+        }
+        if (size == this.size && innerCircleRadius == this.innerCircleRadius) {
+            return@synchronized
+        }
+
+        val scale = size / this.size
+
+        for (i in 0 until activeCount) {
+            mParticleX[i] *= scale
+            mParticleY[i] *= scale
+            mParticlePreviousX[i] *= scale
+            mParticlePreviousY[i] *= scale
+            mParticleSpeed[i] *= scale
+            mParticleOffset[i] *= scale
+            mParticleMaxOffset[i] *= scale
+        }
+        this.size = size
+        this.innerCircleRadius = innerCircleRadius
+        ringThickness = size / 2 - innerCircleRadius
+        particleRadius = DEFAULT_PARTICLE_RADIUS_SCALE_VALUE * size
+        particleSlowestSpeed = DEFAULT_PARTICLE_SLOWEST_SPEED_SCALE_VALUE * size
+        initEmitterTable()
+        interpolateParticle(mAccumulatedTime / SIMULATION_STEP_SECONDS)
+    }
+
+    /**
+     * 扩大粒子容量 (已有粒子状态保持不变)
+     *
+     * @param capacity 新的粒子容量
+     */
+    fun ensureCapacity(capacity: Int) = synchronized(mLock) {
+        if (capacity <= this.capacity) {
+            return@synchronized
+        }
+        mParticleX = mParticleX.copyOf(capacity)
+        mParticleY = mParticleY.copyOf(capacity)
+        mParticlePreviousX = mParticlePreviousX.copyOf(capacity)
+        mParticlePreviousY = mParticlePreviousY.copyOf(capacity)
+        mParticleSpeed = mParticleSpeed.copyOf(capacity)
+        mParticleOffset = mParticleOffset.copyOf(capacity)
+        mParticleMaxOffset = mParticleMaxOffset.copyOf(capacity)
+        mParticleDirectionX = mParticleDirectionX.copyOf(capacity)
+        mParticleDirectionY = mParticleDirectionY.copyOf(capacity)
+        mParticleColorIndex = mParticleColorIndex.copyOf(capacity)
+        this.capacity = capacity
+    }
+
+    /**
+     * 设置活跃粒子数量 (新增的粒子在发射环随机位置生成, 减少的粒子直接丢弃)
+     *
+     * @param count 活跃粒子数量, 范围 [0, capacity]
+     */
+    fun setActiveCount(count: Int) = synchronized(mLock) {
+        val activeCount = count.coerceIn(0, capacity)
+
+        if (size > 0F && ringThickness >= 1F) {
+            for (i in this.activeCount until activeCount) {
+                spawnParticle(i, mRandom.nextInt(mEmitterCount), mRandom)
+                settleParticle(i)
+            }
+        }
+        this.activeCount = activeCount
+    }
+
+    /**
+     * 设置颜色列表和权重 (重建别名表, 并为已有粒子重新抽取颜色)
+     *
+     * @param colors 颜色列表 (不能为空)
+     * @param weights 颜色权重列表 (和颜色列表一一对应), 为 null 时等权重
+     */
+    fun setColors(colors: IntArray, weights: IntArray? = null) = synchronized(mLock) {
+        require(colors.isNotEmpty()) { "colors must not be empty" }
+        require(weights == null || weights.size == colors.size) { "weights size must equal colors size" }
+        mColors = colors.copyOf()
+        mColorAliasTable.build(weights ?: IntArray(colors.size) { 1 })
+        for (i in 0 until activeCount) {
+            mParticleColorIndex[i] = mColorAliasTable.sample(mRandom)
+        }
+        // 立即发布新的颜色列表 (颜色下标和颜色列表必须在同一个快照中保持一致)
+        if (size > 0F && ringThickness >= 1F) {
+            interpolateParticle(mAccumulatedTime / SIMULATION_STEP_SECONDS)
+        }
+    }
+
+    /**
+     * 替换随机数生成器 (模拟步进时每个分块使用由它 [ParticleRandom.split] 派生的子随机数生成器, 所有粒子都使用该实现)
+     *
+     * @param random 随机数生成器 (只在模拟锁内使用, 不需要线程安全)
+     */
+    fun setRandom(random: ParticleRandom) = synchronized(mLock) {
+        mRandom = random
+        mChunkRandoms = arrayOfNulls(0)
+    }
+
+    /**
+     * 设置随机种子 (之后以相同参数 [setup] 并以相同帧时间推进, 模拟结果完全一致, 便于复现和截图对比)
+     *
+     * @param seed 种子
+     */
+    fun setSeed(seed: Long) = synchronized(mLock) {
+        mRandom.setSeed(seed)
+        // 分块随机数生成器在下次模拟步进时由新种子重新派生
+        mChunkRandoms = arrayOfNulls(0)
+    }
+
+    /**
+     * 设置自定义发射形状 (例如沿弧长均匀采样的任意路径), 之后重生的粒子从该形状上出生, 沿法线方向发散.
+     * 坐标和尺寸使用同一坐标系, 以设置时的尺寸为基准 (还没有初始化时以第一次初始化的尺寸为基准), 尺寸变化时和粒子一起按比例缩放
+     *
+     * @param x 采样点 X轴坐标
+     * @param y 采样点 Y轴坐标
+     * @param normalX 采样点向外法线单位向量 X轴分量
+     * @param normalY 采样点向外法线单位向量 Y轴分量
+     */
+    fun setEmitterShape(x: FloatArray, y: FloatArray, normalX: FloatArray, normalY: FloatArray) = synchronized(mLock) {
+        val count = x.size
+
+        require(count > 0) { "emitter shape must not be empty" }
+        require(y.size == count && normalX.size == count && normalY.size == count) { "emitter arrays must have the same size" }
+        mEmitterShapeX = x.copyOf()
+        mEmitterShapeY = y.copyOf()
+        mEmitterShapeSize = size
+        mEmitterX = FloatArray(count)
+        mEmitterY = FloatArray(count)
+        mEmitterDirectionX = normalX.copyOf()
+        mEmitterDirectionY = normalY.copyOf()
+        mEmitterCount = count
+        mCustomEmitter = true
+        initEmitterTable()
+    }
+
+    /**
+     * 清除自定义发射形状, 恢复为扩散圆(内圆)
+     */
+    fun clearEmitterShape() = synchronized(mLock) {
+        if (!mCustomEmitter) {
+            return@synchronized
+        }
+        mCustomEmitter = false
+        mEmitterShapeX = FloatArray(0)
+        mEmitterShapeY = FloatArray(0)
+        mEmitterShapeSize = 0F
+        mEmitterX = FloatArray(EMITTER_TABLE_SIZE)
+        mEmitterY = FloatArray(EMITTER_TABLE_SIZE)
+        mEmitterDirectionX = FloatArray(EMITTER_TABLE_SIZE)
+        mEmitterDirectionY = FloatArray(EMITTER_TABLE_SIZE)
+        mEmitterCount = EMITTER_TABLE_SIZE
+        initEmitterTable()
+    }
+
+    /**
+     * 设置调制参数 (例如音频响应), 从下一步模拟开始生效
+     *
+     * @param emissionScale 发射比例 (0, 1]
+     * @param speedScale 速度比例
+     * @param spreadScale 发射扩散比例
+     */
+    fun setModulation(emissionScale: Float, speedScale: Float, spreadScale: Float) = synchronized(mLock) {
+        mEmissionScale = emissionScale.coerceIn(0F, 1F)
+        mSpeedScale = speedScale.coerceAtLeast(0F)
+        mSpreadScale = spreadScale.coerceAtLeast(0F)
+    }
+
+    /**
+     * 重置帧时钟 (暂停后恢复时调用, 避免把暂停时间当作帧时间)
+     */
+    fun resetClock() = synchronized(mLock) {
+        mLastFrameTimeNanos = 0L
+        mAccumulatedTime = 0F
+    }
+
+    /**
+     * 按固定步长推进模拟到指定帧, 剩余不足一步的时间用于插值, 结果发布为快照
+     *
+     * @param frameTimeNanos 帧时间戳 (纳秒)
+     */
+    fun advance(frameTimeNanos: Long) = synchronized(mLock) {
+        if (size <= 0F || ringThickness < 1F) {
+            return@synchronized
+        }
+        if (mLastFrameTimeNanos != 0L) {
+            val frameTime = (frameTimeNanos - mLastFrameTimeNanos) / NANOS_PER_SECOND
+
+            accumulate(frameTime.coerceIn(0F, MAX_FRAME_TIME_SECONDS))
+        }
+        mLastFrameTimeNanos = frameTimeNanos
+        interpolateParticle(mAccumulatedTime / SIMULATION_STEP_SECONDS)
+    }
+
+    /**
+     * 不依赖帧时钟, 直接推进指定时间 (不限制单次最大时间), 结果发布为快照
+     * 用于离线模拟, 单元测试和基准测试
+     *
+     * @param deltaTime 推进时间 (秒)
+     */
+    fun step(deltaTime: Float) = synchronized(mLock) {
+        if (size <= 0F || ringThickness < 1F) {
+            return@synchronized
+        }
+        accumulate(deltaTime.coerceAtLeast(0F))
+        interpolateParticle(mAccumulatedTime / SIMULATION_STEP_SECONDS)
+    }
+
+    /**
+     * 累计时间并按固定步长模拟, 剩余不足一步的时间留到下次
+     *
+     * @param deltaTime 累计时间 (秒)
+     */
+    private fun accumulate(deltaTime: Float) {
+        mAccumulatedTime += deltaTime
+        while (mAccumulatedTime >= SIMULATION_STEP_SECONDS) {
+            updateParticle(SIMULATION_STEP_SECONDS)
+            mAccumulatedTime -= SIMULATION_STEP_SECONDS
+        }
+    }
+
+    /**
+     * 复制最新发布快照中可见粒子的包围盒 (含粒子半径), 用于只刷新粒子所在区域
+     *
+     * @param bounds 输出 [left, top, right, bottom] (长度不少于 4)
+     * @return 是否有可见粒子
+     */
+    fun copyBounds(bounds: FloatArray): Boolean = synchronized(mLock) {
+        System.arraycopy(mBounds, 0, bounds, 0, 4)
+        return@synchronized mBounds[0] <= mBounds[2]
+    }
+
+    /**
+     * 获取最新发布的快照作为绘制快照 (只能由同一个绘制线程调用)
+     */
+    fun acquireSnapshot(): ParticleSnapshot {
+        if (mPublishedSnapshot.get().sequence > mFrontSnapshot.sequence) {
+            mFrontSnapshot = mPublishedSnapshot.getAndSet(mFrontSnapshot)
+        }
+        return mFrontSnapshot
+    }
+
+    /**
+     * 初始化发射环查找表 (尺寸变化时采样一次, 之后粒子重生只需查表)
+     * 起点为圆的最右侧, 逆时针方向采样. 使用自定义发射形状时按尺寸比例缩放自定义形状 (法线方向不变)
+     */
+    private fun initEmitterTable() {
+        if (mCustomEmitter) {
+            if (size <= 0F) {
+                return
+            }
+            if (mEmitterShapeSize <= 0F) {
+                mEmitterShapeSize = size
+            }
+
+            val scale = size / mEmitterShapeSize
+
+            for (i in 0 until mEmitterCount) {
+                mEmitterX[i] = mEmitterShapeX[i] * scale
+                mEmitterY[i] = mEmitterShapeY[i] * scale
+            }
+            return
+        }
+
+        val center = size / 2F
+
+        for (i in 0 until EMITTER_TABLE_SIZE) {
+            val angle = -2.0 * PI * i / EMITTER_TABLE_SIZE
+            // 由圆心指向该点的单位向量即为向外发散方向
+            val directionX = cos(angle).toFloat()
+            val directionY = sin(angle).toFloat()
+
+            mEmitterX[i] = center + innerCircleRadius * directionX
+            mEmitterY[i] = center + innerCircleRadius * directionY
+            mEmitterDirectionX[i] = directionX
+            mEmitterDirectionY[i] = directionY
+        }
+    }
+
+    /**
+     * 在发射环查找表指定位置生成(重置)粒子
+     *
+     * @param index 粒子下标
+     * @param emitterIndex 发射环查找表下标
+     * @param random 随机数生成器 (模拟步进时为分块各自的随机数生成器)
+     */
+    private fun spawnParticle(index: Int, emitterIndex: Int, random: ParticleRandom) {
+        // 当前移动距离
+        mParticleOffset[index] = 0F
+        // 速度 (像素/秒)
+        mParticleSpeed[index] = getRandomSpeed(random)
+        // 最大移动距离
+        mParticleMaxOffset[index] = random.nextFloat() * ringThickness
+        // 在扩展圆(内圆) 边界线 X轴方向 左右浮动
+        mParticleX[index] = mEmitterX[emitterIndex] + getCoordinateRandomOffset(random)
+        // 在扩展圆(内圆) 边界线 Y轴方向 上下浮动
+        mParticleY[index] = mEmitterY[emitterIndex] + getCoordinateRandomOffset(random)
+        // 新生粒子不从旧位置插值过来
+        mParticlePreviousX[index] = mParticleX[index]
+        mParticlePreviousY[index] = mParticleY[index]
+        // 出生时记录发散方向, 之后每帧只需乘加
+        mParticleDirectionX[index] = mEmitterDirectionX[emitterIndex]
+        mParticleDirectionY[index] = mEmitterDirectionY[emitterIndex]
+        // 按权重抽取颜色 O(1)
+        mParticleColorIndex[index] = mColorAliasTable.sample(random)
+    }
+
+    /**
+     * 把刚生成的粒子直接放到稳定状态中的随机时刻 (解析采样, 代替先模拟一段时间再显示)
+     * 模拟按固定步长推进, 一个粒子从出生到重生经历的步数为 ceil(最大移动距离 / 每步移动距离) + 1 (最后一步已经透明, 等待重生),
+     * 稳定状态下观察到某个粒子的概率和该步数成正比, 因此按步数对 速度 和 最大移动距离 做拒绝采样, 再在这些步中均匀选取一步
+     * (按连续寿命采样时会低估寿命很短的粒子, 内圆附近的粒子在开始模拟后明显变多).
+     * 上一步坐标也按模拟结果设置 (刚重生的粒子和当前坐标相同, 其余粒子后退一步), 插值结果和模拟中的任意一步一致.
+     * 速度比例为 0 时粒子静止不动, 不存在稳定状态, 直接在 [0, 最大移动距离] 内均匀选取移动距离
+     *
+     * @param index 粒子下标 (已经调用过 [spawnParticle])
+     */
+    private fun settleParticle(index: Int) {
+        val stepTime = SIMULATION_STEP_SECONDS * mSpeedScale
+        val longestStepCount = ceil(ringThickness / (particleSlowestSpeed * stepTime)) + 1F
+        var speed: Float
+        var maxOffset: Float
+        val offset: Float
+        val previousOffset: Float
+
+        // 速度比例为 0 (或小到每步移动距离下溢) 时步数为无穷大, 拒绝采样永远无法结束
+        if (stepTime <= 0F || longestStepCount.isInfinite()) {
+            speed = getRandomSpeed(mRandom)
+            maxOffset = mRandom.nextFloat() * ringThickness
+            offset = mRandom.nextFloat() * maxOffset
+            previousOffset = offset
+        } else {
+            var stepCount: Float
+
+            do {
+                speed = getRandomSpeed(mRandom)
+                maxOffset = mRandom.nextFloat() * ringThickness
+                stepCount = ceil(maxOffset / (speed * stepTime)) + 1F
+            } while (mRandom.nextFloat() * longestStepCount >= stepCount)
+
+            val stepIndex = mRandom.nextInt(stepCount.toInt())
+            val stepDistance = speed * stepTime
+
+            offset = stepIndex * stepDistance
+            previousOffset = if (stepIndex == 0) 0F else offset - stepDistance
+        }
+
+        val spawnX = mParticleX[index]
+        val spawnY = mParticleY[index]
+
+        mParticleSpeed[index] = speed
+        mParticleMaxOffset[index] = maxOffset
+        mParticleOffset[index] = offset
+        mParticleX[index] = spawnX + offset * mParticleDirectionX[index]
+        mParticleY[index] = spawnY + offset * mParticleDirectionY[index]
+        mParticlePreviousX[index] = spawnX + previousOffset * mParticleDirectionX[index]
+        mParticlePreviousY[index] = spawnY + previousOffset * mParticleDirectionY[index]
+    }
+
+    /**
+     * 更新粒子 (推进一个固定步长): 按固定大小分块, 每块使用自己的随机数生成器,
+     * 活跃粒子数量达到并行阈值时在 ForkJoinPool 中并行执行, 否则在当前线程依次执行
+     *
+     * @param deltaTime 步长 (秒)
+     */
+    private fun updateParticle(deltaTime: Float) {
+        val chunkCount = prepareChunks()
+
+        ensureChunkRandoms(chunkCount)
+        if (isParallel(chunkCount)) {
+            for (chunk in 0 until chunkCount) {
+                mChunkTasks[chunk]!!.prepareUpdate(deltaTime, mChunkRandoms[chunk]!!)
+            }
+            invokeChunks(chunkCount)
+            for (chunk in 0 until chunkCount) {
+                mTotalRespawnCount += mChunkTasks[chunk]!!.respawnCount
+            }
+        } else {
+            for (chunk in 0 until chunkCount) {
+                val task = mChunkTasks[chunk]!!
+
+                mTotalRespawnCount += updateParticleRange(task.start, task.end, deltaTime, mChunkRandoms[chunk]!!)
+            }
+        }
+    }
+
+    /**
+     * 按活跃粒子数量准备分块任务的范围
+     *
+     * @return 分块数量
+     */
+    private fun prepareChunks(): Int {
+        val activeCount = activeCount
+        val chunkCount = (activeCount + CHUNK_SIZE - 1) / CHUNK_SIZE
+
+        if (mChunkTasks.size < chunkCount) {
+            mChunkTasks = mChunkTasks.copyOf(chunkCount)
+        }
+        for (chunk in 0 until chunkCount) {
+            val task = mChunkTasks[chunk] ?: ChunkTask().also { mChunkTasks[chunk] = it }
+
+            task.start = chunk * CHUNK_SIZE
+            task.end = minOf(task.start + CHUNK_SIZE, activeCount)
+        }
+        return chunkCount
+    }
+
+    /**
+     * 确保每个分块都有随机数生成器 (分块数量增加时由主随机数生成器 [ParticleRandom.split] 派生新的分块随机数生成器)
+     *
+     * @param chunkCount 分块数量
+     */
+    private fun ensureChunkRandoms(chunkCount: Int) {
+        if (mChunkRandoms.size < chunkCount) {
+            val chunkRandoms = mChunkRandoms.copyOf(chunkCount)
+
+            for (chunk in mChunkRandoms.size until chunkCount) {
+                chunkRandoms[chunk] = mRandom.split()
+            }
+            mChunkRandoms = chunkRandoms
+        }
+    }
+
+    /**
+     * 是否并行执行 (活跃粒子数量达到并行阈值, 且至少有两个分块)
+     *
+     * @param chunkCount 分块数量
+     */
+    private fun isParallel(chunkCount: Int) = activeCount >= parallelThreshold && chunkCount >= 2
+
+    /**
+     * 在 ForkJoinPool 中并行执行已准备好的分块任务, 全部完成后返回
+     *
+     * @param chunkCount 分块数量
+     */
+    private fun invokeChunks(chunkCount: Int) {
+        mChunkCount = chunkCount
+        mParallelTask.reinitialize()
+        mParallelPool.invoke(mParallelTask)
+    }
+
+    /**
+     * 更新指定范围的粒子
+     *
+     * @param start 起始下标 (包含)
+     * @param end 结束下标 (不包含)
+     * @param deltaTime 步长 (秒)
+     * @param random 随机数生成器
+     * @return 重生的粒子数量
+     */
+    private fun updateParticleRange(start: Int, end: Int, deltaTime: Float, random: ParticleRandom): Int {
+        val x = mParticleX
+        val y = mParticleY
+        val previousX = mParticlePreviousX
+        val previousY = mParticlePreviousY
+        val speed = mParticleSpeed
+        val offset = mParticleOffset
+        val maxOffset = mParticleMaxOffset
+        val directionX = mParticleDirectionX
+        val directionY = mParticleDirectionY
+        val emissionScale = mEmissionScale
+        val step = deltaTime * mSpeedScale
+        var respawnCount = 0
+
+        for (i in start until end) {
+            if (offset[i] >= maxOffset[i]) {
+                // 当前粒子重置 (发射比例小于1时, 未抽中的粒子保持透明, 下一步再抽)
+                if (emissionScale >= 1F || random.nextFloat() < emissionScale) {
+                    spawnParticle(i, random.nextInt(mEmitterCount), random)
+                    ++respawnCount
+                }
+            } else {
+                val distance = speed[i] * step
+
+                previousX[i] = x[i]
+                previousY[i] = y[i]
+                // 当前移动距离
+                offset[i] += distance
+                // 沿发散方向移动
+                x[i] += distance * directionX[i]
+                y[i] += distance * directionY[i]
+            }
+        }
+        return respawnCount
+    }
+
+    /**
+     * 在上一步和当前步之间插值, 把绘制坐标和透明度写入后台快照并发布
+     *
+     * @param fraction 插值比例 [0, 1)
+     */
+    private fun interpolateParticle(fraction: Float) {
+        // 容量扩大后, 旧快照轮换回来时按新容量重新分配
+        if (mBackSnapshot.x.size < activeCount) {
+            mBackSnapshot = ParticleSnapshot(capacity)
+        }
+
+        val snapshot = mBackSnapshot
+        val chunkCount = prepareChunks()
+        var left = Float.MAX_VALUE
+        var top = Float.MAX_VALUE
+        var right = -Float.MAX_VALUE
+        var bottom = -Float.MAX_VALUE
+        var liveCount = 0
+
+        if (isParallel(chunkCount)) {
+            for (chunk in 0 until chunkCount) {
+                mChunkTasks[chunk]!!.prepareInterpolate(fraction, snapshot)
+            }
+            invokeChunks(chunkCount)
+            // 合并各分块的包围盒 (取最小值和最大值, 和分块顺序无关)
+            for (chunk in 0 until chunkCount) {
+                val task = mChunkTasks[chunk]!!
+                val bounds = task.bounds
+
+                liveCount += task.liveCount
+                if (bounds[0] < left) left = bounds[0]
+                if (bounds[1] < top) top = bounds[1]
+                if (bounds[2] > right) right = bounds[2]
+                if (bounds[3] > bottom) bottom = bounds[3]
+            }
+        } else {
+            val bounds = mRangeBounds
+
+            liveCount = interpolateParticleRange(0, activeCount, fraction, snapshot, bounds)
+            left = bounds[0]
+            top = bounds[1]
+            right = bounds[2]
+            bottom = bounds[3]
+        }
+        if (left <= right) {
+            left -= particleRadius
+            top -= particleRadius
+            right += particleRadius
+            bottom += particleRadius
+        }
+        snapshot.left = left
+        snapshot.top = top
+        snapshot.right = right
+        snapshot.bottom = bottom
+        mBounds[0] = left
+        mBounds[1] = top
+        mBounds[2] = right
+        mBounds[3] = bottom
+        System.arraycopy(mParticleColorIndex, 0, snapshot.colorIndex, 0, activeCount)
+        snapshot.colors = mColors
+        snapshot.count = activeCount
+        snapshot.liveCount = liveCount
+        snapshot.totalRespawnCount = mTotalRespawnCount
+        snapshot.particleRadius = particleRadius
+        snapshot.visible = true
+        snapshot.sequence = ++mSnapshotSequence
+        // 发布: 后台快照和已发布快照交换
+        mBackSnapshot = mPublishedSnapshot.getAndSet(snapshot)
+    }
+
+    /**
+     * 插值指定范围的粒子, 写入快照, 并统计该范围内可见粒子的包围盒 (不含粒子半径)
+     *
+     * @param start 起始下标 (包含)
+     * @param end 结束下标 (不包含)
+     * @param fraction 插值比例 [0, 1)
+     * @param snapshot 写入的快照
+     * @param bounds 输出包围盒 [left, top, right, bottom] (没有可见粒子时 left > right)
+     * @return 可见粒子数量
+     */
+    private fun interpolateParticleRange(start: Int, end: Int, fraction: Float, snapshot: ParticleSnapshot, bounds: FloatArray): Int {
+        val renderX = snapshot.x
+        val renderY = snapshot.y
+        val renderAlpha = snapshot.alpha
+        var left = Float.MAX_VALUE
+        var top = Float.MAX_VALUE
+        var right = -Float.MAX_VALUE
+        var bottom = -Float.MAX_VALUE
+        var liveCount = 0
+
+        for (i in start until end) {
+            val previousX = mParticlePreviousX[i]
+            val previousY = mParticlePreviousY[i]
+            val x = previousX + (mParticleX[i] - previousX) * fraction
+            val y = previousY + (mParticleY[i] - previousY) * fraction
+
+            renderX[i] = x
+            renderY[i] = y
+
+            // 加界限判断, 防止闪烁
+            val alpha = ((1F - mParticleOffset[i] / mParticleMaxOffset[i]) * 255F).toInt()
+
+            renderAlpha[i] = when {
+                alpha < 0 -> 0
+                alpha > 255 -> 255
+                else -> alpha
+            }
+            // 统计可见粒子包围盒 (完全透明的粒子不绘制, 不计入)
+            if (alpha > 0) {
+                ++liveCount
+                if (x < left) left = x
+                if (x > right) right = x
+                if (y < top) top = y
+                if (y > bottom) bottom = y
+            }
+        }
+        bounds[0] = left
+        bounds[1] = top
+        bounds[2] = right
+        bounds[3] = bottom
+        return liveCount
+    }
+
+    /**
+     * 把 Float 按原始位写入保存状态的两个 Short
+     *
+     * @param state 保存状态
+     * @param position 写入位置
+     * @param value 值
+     */
+    private fun putStateFloat(state: ShortArray, position: Int, value: Float) {
+        val bits = value.toRawBits()
+
+        state[position] = (bits ushr 16).toShort()
+        state[position + 1] = bits.toShort()
+    }
+
+    /**
+     * 从保存状态的两个 Short 读取 [putStateFloat] 写入的 Float
+     *
+     * @param state 保存状态
+     * @param position 读取位置
+     */
+    private fun getStateFloat(state: ShortArray, position: Int): Float {
+        return Float.fromBits(((state[position].toInt() and 0xFFFF) shl 16) or (state[position + 1].toInt() and 0xFFFF))
+    }
+
+    /**
+     * 把 [min, max] 范围内的值量化为 16 位 (超出范围时取边界值)
+     *
+     * @param value 值
+     * @param min 最小值
+     * @param max 最大值
+     */
+    private fun quantize(value: Float, min: Float, max: Float): Short {
+        return ((value - min) / (max - min) * STATE_QUANTIZATION_LEVEL + 0.5F).toInt()
+            .coerceIn(0, STATE_QUANTIZATION_LEVEL.toInt())
+            .toShort()
+    }
+
+    /**
+     * 把 [quantize] 量化的 16 位值还原
+     *
+     * @param value 量化值
+     * @param min 最小值
+     * @param max 最大值
+     */
+    private fun dequantize(value: Short, min: Float, max: Float): Float {
+        return (value.toInt() and 0xFFFF) / STATE_QUANTIZATION_LEVEL * (max - min) + min
+    }
+
+    /**
+     * 获取坐标随机偏移量 [-9.6‰, 9.6‰) * 尺寸 * 扩散比例 (使用浮点随机数, 尺寸很小时也不会出现 nextInt(0))
+     */
+    private fun getCoordinateRandomOffset(random: ParticleRandom) = (random.nextFloat() * 19.2F - 9.6F) * SCALE_BASE_VALUE * size * mSpreadScale
+
+    /**
+     * 获取随机速度量 [最慢速度, 2 * 最慢速度)
+     */
+    private fun getRandomSpeed(random: ParticleRandom): Float {
+        return random.nextFloat() * particleSlowestSpeed + particleSlowestSpeed
+    }
+
+    /**
+     * 并行模拟根任务 (派发所有分块任务并等待完成)
+     */
+    private inner class ParallelTask : RecursiveAction() {
+
+        override fun compute() {
+            val chunkCount = mChunkCount
+            val tasks = mChunkTasks
+
+            for (chunk in 1 until chunkCount) {
+                tasks[chunk]!!.fork()
+            }
+            // 当前线程直接执行第一块
+            tasks[0]!!.invoke()
+            for (chunk in 1 until chunkCount) {
+                tasks[chunk]!!.join()
+            }
+        }
+
+    }
+
+    /**
+     * 分块任务 (单线程模拟时只使用分块范围, 并行模拟时按阶段执行 更新 或 插值)
+     */
+    private inner class ChunkTask : RecursiveAction() {
+
+        /** 起始下标 (包含) */
+        var start = 0
+        /** 结束下标 (不包含) */
+        var end = 0
+        /** 该分块的随机数生成器 (更新阶段) */
+        private var mChunkRandom: ParticleRandom? = null
+        /** 是否为插值阶段  true: 插值  false: 更新 */
+        private var mInterpolate = false
+        /** 步长 (秒, 更新阶段) */
+        private var mDeltaTime = 0F
+        /** 插值比例 (插值阶段) */
+        private var mFraction = 0F
+        /** 写入的快照 (插值阶段) */
+        private var mSnapshot: ParticleSnapshot? = null
+        /** 本步该分块重生的粒子数量 (更新阶段) */
+        var respawnCount = 0
+        /** 该分块可见粒子数量 (插值阶段) */
+        var liveCount = 0
+        /** 该分块可见粒子包围盒 (插值阶段) */
+        val bounds = FloatArray(4)
+
+        /**
+         * 准备更新阶段
+         *
+         * @param deltaTime 步长 (秒)
+         * @param random 该分块的随机数生成器
+         */
+        fun prepareUpdate(deltaTime: Float, random: ParticleRandom) {
+            reinitialize()
+            mInterpolate = false
+            mDeltaTime = deltaTime
+            mChunkRandom = random
+        }
+
+        /**
+         * 准备插值阶段
+         *
+         * @param fraction 插值比例 [0, 1)
+         * @param snapshot 写入的快照
+         */
+        fun prepareInterpolate(fraction: Float, snapshot: ParticleSnapshot) {
+            reinitialize()
+            mInterpolate = true
+            mFraction = fraction
+            mSnapshot = snapshot
+        }
+
+        override fun compute() {
+            if (mInterpolate) {
+                liveCount = interpolateParticleRange(start, end, mFraction, mSnapshot!!, bounds)
+            } else {
+                respawnCount = updateParticleRange(start, end, mDeltaTime, mChunkRandom!!)
+            }
+        }
+
+    }
+
+}
+
+/**
+ * 粒子绘制快照 (模拟方写入, 绘制方读取, 通过原子交换传递)
+ */
+class ParticleSnapshot(capacity: Int) {
+
+    /** 粒子绘制 X轴坐标 */
+    val x = FloatArray(capacity)
+
+    /** 粒子绘制 Y轴坐标 */
+    val y = FloatArray(capacity)
+
+    /** 粒子绘制透明度 [0, 255] */
+    val alpha = IntArray(capacity)
+
+    /** 粒子颜色下标 */
+    val colorIndex = IntArray(capacity)
+
+    /** 颜色列表 (只读) */
+    var colors = IntArray(0)
+
+    /** 有效粒子数量 (活跃粒子数量) */
+    var count = 0
+
+    /** 可见粒子数量 (透明度大于 0 的粒子) */
+    var liveCount = 0
+
+    /** 发布该快照时累计重生的粒子数量 (两次快照的差值即为期间重生的粒子数量) */
+    var totalRespawnCount = 0L
+
+    /** 粒子半径 */
+    var particleRadius = 0F
+
+    /** 可见粒子包围盒 左边界 (含粒子半径, left > right 表示没有可见粒子) */
+    var left = 0F
+
+    /** 可见粒子包围盒 上边界 */
+    var top = 0F
+
+    /** 可见粒子包围盒 右边界 */
+    var right = -1F
+
+    /** 可见粒子包围盒 下边界 */
+    var bottom = -1F
+
+    /** 是否可以绘制 (已经按有效尺寸初始化过) */
+    var visible = false
+
+    /** 发布序号 (越大越新) */
+    var sequence = 0L
+
+}
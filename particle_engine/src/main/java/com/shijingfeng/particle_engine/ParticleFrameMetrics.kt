@@ -0,0 +1,54 @@
+package com.shijingfeng.particle_engine
+
+/**
+ * Function: 粒子每帧性能指标
+ * Date: 2026/10/17 20:30
+ * Description: 由粒子 View 每帧填写后回调给监听器. 对象在每帧之间复用, 监听器不能在回调之外持有或修改它,
+ * 需要保存时复制其中的字段.
+ * @author ShiJingFeng
+ */
+class ParticleFrameMetrics {
+
+    /** 帧时间戳 (纳秒, 垂直同步时间) */
+    var frameTimeNanos = 0L
+
+    /** 活跃粒子数量 (参与模拟的粒子) */
+    var activeParticleCount = 0
+
+    /** 可见粒子数量 (透明度大于 0 的粒子) */
+    var liveParticleCount = 0
+
+    /** 自上一帧以来重生的粒子数量 */
+    var respawnCount = 0
+
+    /** 模拟耗时 (纳秒) */
+    var updateTimeNanos = 0L
+
+    /** 绘制耗时 (纳秒) */
+    var drawTimeNanos = 0L
+
+    /** 本帧之前错过的垂直同步次数 (帧回调间隔超出刷新周期的整数倍) */
+    var lateTickCount = 0
+
+    /** 开始运行以来累计错过的垂直同步次数 */
+    var totalLateTickCount = 0L
+
+    /** 最近若干帧模拟耗时 P50 (纳秒) */
+    var updateTimeP50Nanos = 0L
+
+    /** 最近若干帧模拟耗时 P90 (纳秒) */
+    var updateTimeP90Nanos = 0L
+
+    /** 最近若干帧模拟耗时 P99 (纳秒) */
+    var updateTimeP99Nanos = 0L
+
+    /** 最近若干帧绘制耗时 P50 (纳秒) */
+    var drawTimeP50Nanos = 0L
+
+    /** 最近若干帧绘制耗时 P90 (纳秒) */
+    var drawTimeP90Nanos = 0L
+
+    /** 最近若干帧绘制耗时 P99 (纳秒) */
+    var drawTimeP99Nanos = 0L
+
+}
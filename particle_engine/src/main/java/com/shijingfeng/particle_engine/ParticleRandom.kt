@@ -0,0 +1,49 @@
+package com.shijingfeng.particle_engine
+
+/**
+ * Function: 粒子随机数生成器
+ * Date: 2026/10/17 18:02
+ * Description: 粒子模拟热路径使用的随机数生成器接口, 不要求线程安全, 可以指定种子以便复现模拟结果.
+ * 模拟按分块使用各自的子随机数生成器, 子随机数生成器由 [split] 派生, 因此替换实现后所有粒子都使用同一种算法
+ * @author ShiJingFeng
+ */
+interface ParticleRandom {
+
+    /**
+     * 设置种子 (相同种子产生相同的随机序列)
+     *
+     * @param seed 种子
+     */
+    fun setSeed(seed: Long)
+
+    /**
+     * 随机整数
+     *
+     * @param bound 上界 (不包含), 必须大于0
+     * @return [0, bound) 范围内的随机整数
+     */
+    fun nextInt(bound: Int): Int
+
+    /**
+     * 随机长整数 (用于派生其他随机数生成器的种子)
+     *
+     * @return 64 位随机长整数
+     */
+    fun nextLong(): Long
+
+    /**
+     * 随机浮点数
+     *
+     * @return [0, 1) 范围内的随机浮点数
+     */
+    fun nextFloat(): Float
+
+    /**
+     * 派生一个独立的子随机数生成器 (同一实现, 种子由当前随机序列决定, 之后两者互不影响)
+     * 相同种子的随机数生成器按相同顺序派生出的子随机数生成器产生相同的随机序列
+     *
+     * @return 子随机数生成器
+     */
+    fun split(): ParticleRandom
+
+}
@@ -0,0 +1,72 @@
+package com.shijingfeng.particle_engine
+
+import java.util.*
+
+/** 默认滑动窗口大小 (帧数, 60Hz 下约 2 秒) */
+private const val DEFAULT_WINDOW_SIZE = 120
+
+/**
+ * Function: 滑动窗口百分位数
+ * Date: 2026/10/17 20:30
+ * Description: 记录最近 windowSize 个采样, 按需计算百分位数. 采样和排序缓冲都预先分配, 记录和查询都不分配内存.
+ * 只能在同一个线程中使用.
+ * @author ShiJingFeng
+ */
+class ParticleRollingPercentile @JvmOverloads constructor(
+    /** 滑动窗口大小 */
+    windowSize: Int = DEFAULT_WINDOW_SIZE
+) {
+
+    /** 采样 (环形存储) */
+    private val mSamples = LongArray(windowSize.coerceAtLeast(1))
+    /** 排序缓冲 */
+    private val mSorted = LongArray(mSamples.size)
+    /** 下一个采样写入位置 */
+    private var mSampleIndex = 0
+    /** 当前窗口内的采样数量 */
+    private var mSampleCount = 0
+    /** 排序缓冲是否需要重新排序 */
+    private var mDirty = false
+
+    /**
+     * 记录一个采样
+     *
+     * @param value 采样值
+     */
+    fun record(value: Long) {
+        mSamples[mSampleIndex] = value
+        mSampleIndex = (mSampleIndex + 1) % mSamples.size
+        if (mSampleCount < mSamples.size) {
+            ++mSampleCount
+        }
+        mDirty = true
+    }
+
+    /**
+     * 获取百分位数 (最近一次记录后第一次查询时排序)
+     *
+     * @param fraction 百分位 [0, 1], 例如 0.99 表示 P99
+     * @return 百分位数 (没有采样时返回 0)
+     */
+    fun percentile(fraction: Float): Long {
+        if (mSampleCount == 0) {
+            return 0L
+        }
+        if (mDirty) {
+            System.arraycopy(mSamples, 0, mSorted, 0, mSampleCount)
+            Arrays.sort(mSorted, 0, mSampleCount)
+            mDirty = false
+        }
+        return mSorted[((mSampleCount - 1) * fraction.coerceIn(0F, 1F) + 0.5F).toInt()]
+    }
+
+    /**
+     * 清空窗口
+     */
+    fun reset() {
+        mSampleIndex = 0
+        mSampleCount = 0
+        mDirty = false
+    }
+
+}
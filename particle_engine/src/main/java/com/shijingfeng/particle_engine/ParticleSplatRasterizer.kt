@@ -0,0 +1,239 @@
+package com.shijingfeng.particle_engine
+
+import kotlin.math.ceil
+import kotlin.math.floor
+import kotlin.math.sqrt
+
+/**
+ * Function: 粒子软件光栅化器
+ * Date: 2026/10/17 19:40
+ * Description: 把 [ParticleSnapshot] 中的粒子以加法混合方式直接写入像素数组 (每个粒子是半径为粒子半径的抗锯齿圆点),
+ * 耗时只和写入的像素数量有关, 和绘制调用次数无关. 每帧只清除上一帧写入过的区域.
+ * 结果 [pixels] 为非预乘 ARGB, 可以直接通过 Bitmap.setPixels 上传 [dirtyLeft, dirtyTop, dirtyRight, dirtyBottom) 区域.
+ * 不依赖 Android, 只能在同一个线程中使用.
+ * @author ShiJingFeng
+ */
+class ParticleSplatRasterizer {
+
+    /** 累加缓冲 (预乘 ARGB, 加法混合在预乘空间中进行) */
+    private var mAccumulation = IntArray(0)
+    /** 上一帧写入区域 左边界 */
+    private var mLastLeft = 0
+    /** 上一帧写入区域 上边界 */
+    private var mLastTop = 0
+    /** 上一帧写入区域 右边界 (不包含) */
+    private var mLastRight = 0
+    /** 上一帧写入区域 下边界 (不包含) */
+    private var mLastBottom = 0
+
+    /** 宽度 (像素) */
+    var width = 0
+        private set
+    /** 高度 (像素) */
+    var height = 0
+        private set
+    /** 输出像素 (非预乘 ARGB, 行优先, 行宽为 [width]) */
+    var pixels = IntArray(0)
+        private set
+
+    /** 本帧需要上传的区域 左边界 (本帧写入区域 和 上一帧写入区域 的并集) */
+    var dirtyLeft = 0
+        private set
+    /** 本帧需要上传的区域 上边界 */
+    var dirtyTop = 0
+        private set
+    /** 本帧需要上传的区域 右边界 (不包含) */
+    var dirtyRight = 0
+        private set
+    /** 本帧需要上传的区域 下边界 (不包含) */
+    var dirtyBottom = 0
+        private set
+
+    /**
+     * 设置尺寸 (尺寸变化时重新分配并清空缓冲)
+     *
+     * @param width 宽度 (像素)
+     * @param height 高度 (像素)
+     */
+    fun resize(width: Int, height: Int) {
+        if (width == this.width && height == this.height) {
+            return
+        }
+        this.width = width
+        this.height = height
+        mAccumulation = IntArray(width * height)
+        pixels = IntArray(width * height)
+        mLastLeft = 0
+        mLastTop = 0
+        mLastRight = 0
+        mLastBottom = 0
+    }
+
+    /**
+     * 光栅化一帧
+     *
+     * @param snapshot 粒子快照
+     * @return 是否有需要上传的区域
+     */
+    fun rasterize(snapshot: ParticleSnapshot): Boolean {
+        val width = width
+        val accumulation = mAccumulation
+        val pixels = pixels
+
+        // 只清除上一帧写入过的区域
+        for (row in mLastTop until mLastBottom) {
+            val rowStart = row * width
+
+            accumulation.fill(0, rowStart + mLastLeft, rowStart + mLastRight)
+            pixels.fill(0, rowStart + mLastLeft, rowStart + mLastRight)
+        }
+
+        // 本帧写入区域 (可见粒子包围盒, 四边各扩展一个像素的抗锯齿边缘, 限制在缓冲范围内)
+        var left = 0
+        var top = 0
+        var right = 0
+        var bottom = 0
+
+        if (snapshot.visible && snapshot.left <= snapshot.right) {
+            left = (floor(snapshot.left).toInt() - 1).coerceIn(0, width)
+            top = (floor(snapshot.top).toInt() - 1).coerceIn(0, height)
+            right = (ceil(snapshot.right).toInt() + 1).coerceIn(left, width)
+            bottom = (ceil(snapshot.bottom).toInt() + 1).coerceIn(top, height)
+            splatParticles(snapshot, left, top, right, bottom)
+            unpremultiply(left, top, right, bottom)
+        }
+
+        dirtyLeft = minOf(left, mLastLeft)
+        dirtyTop = minOf(top, mLastTop)
+        dirtyRight = maxOf(right, mLastRight)
+        dirtyBottom = maxOf(bottom, mLastBottom)
+        // 一方为空时只取另一方
+        if (right <= left || bottom <= top) {
+            dirtyLeft = mLastLeft
+            dirtyTop = mLastTop
+            dirtyRight = mLastRight
+            dirtyBottom = mLastBottom
+        } else if (mLastRight <= mLastLeft || mLastBottom <= mLastTop) {
+            dirtyLeft = left
+            dirtyTop = top
+            dirtyRight = right
+            dirtyBottom = bottom
+        }
+        mLastLeft = left
+        mLastTop = top
+        mLastRight = right
+        mLastBottom = bottom
+        return dirtyRight > dirtyLeft && dirtyBottom > dirtyTop
+    }
+
+    /**
+     * 把所有粒子以加法混合写入累加缓冲 (只写入本帧区域内, 保证下一帧可以完整清除)
+     * 像素中心到粒子中心的距离为 d 时覆盖率为 clamp(radius + 0.5 - d, 0, 1)
+     *
+     * @param snapshot 粒子快照
+     * @param left 本帧区域 左边界 (包含)
+     * @param top 本帧区域 上边界 (包含)
+     * @param right 本帧区域 右边界 (不包含)
+     * @param bottom 本帧区域 下边界 (不包含)
+     */
+    private fun splatParticles(snapshot: ParticleSnapshot, left: Int, top: Int, right: Int, bottom: Int) {
+        val width = width
+        val accumulation = mAccumulation
+        val radius = snapshot.particleRadius
+        val outerRadius = radius + 0.5F
+        val outerRadiusSquare = outerRadius * outerRadius
+        val innerRadius = (radius - 0.5F).coerceAtLeast(0F)
+        val innerRadiusSquare = innerRadius * innerRadius
+        val colors = snapshot.colors
+        val colorIndex = snapshot.colorIndex
+        val x = snapshot.x
+        val y = snapshot.y
+        val alpha = snapshot.alpha
+
+        for (i in 0 until snapshot.count) {
+            val particleAlpha = alpha[i]
+
+            if (particleAlpha == 0) {
+                continue
+            }
+
+            val centerX = x[i]
+            val centerY = y[i]
+            val color = colors[colorIndex[i]]
+            val red = (color shr 16) and 0xFF
+            val green = (color shr 8) and 0xFF
+            val blue = color and 0xFF
+            val startX = floor(centerX - outerRadius).toInt().coerceAtLeast(left)
+            val endX = ceil(centerX + outerRadius).toInt().coerceAtMost(right)
+            val startY = floor(centerY - outerRadius).toInt().coerceAtLeast(top)
+            val endY = ceil(centerY + outerRadius).toInt().coerceAtMost(bottom)
+
+            for (row in startY until endY) {
+                val deltaY = row + 0.5F - centerY
+                val deltaYSquare = deltaY * deltaY
+                val rowStart = row * width
+
+                for (column in startX until endX) {
+                    val deltaX = column + 0.5F - centerX
+                    val distanceSquare = deltaX * deltaX + deltaYSquare
+
+                    if (distanceSquare >= outerRadiusSquare) {
+                        continue
+                    }
+
+                    // 圆内部覆盖率为1, 只在边缘一个像素宽度内开方计算覆盖率
+                    val coverageAlpha = if (distanceSquare <= innerRadiusSquare) {
+                        particleAlpha
+                    } else {
+                        ((outerRadius - sqrt(distanceSquare)).coerceAtMost(1F) * particleAlpha).toInt()
+                    }
+
+                    if (coverageAlpha <= 0) {
+                        continue
+                    }
+
+                    val index = rowStart + column
+                    val destination = accumulation[index]
+                    // 预乘后饱和相加
+                    val resultAlpha = ((destination ushr 24) + coverageAlpha).coerceAtMost(255)
+                    val resultRed = (((destination shr 16) and 0xFF) + red * coverageAlpha / 255).coerceAtMost(255)
+                    val resultGreen = (((destination shr 8) and 0xFF) + green * coverageAlpha / 255).coerceAtMost(255)
+                    val resultBlue = ((destination and 0xFF) + blue * coverageAlpha / 255).coerceAtMost(255)
+
+                    accumulation[index] = (resultAlpha shl 24) or (resultRed shl 16) or (resultGreen shl 8) or resultBlue
+                }
+            }
+        }
+    }
+
+    /**
+     * 把指定区域的累加结果转换为非预乘 ARGB 写入输出像素
+     */
+    private fun unpremultiply(left: Int, top: Int, right: Int, bottom: Int) {
+        val width = width
+        val accumulation = mAccumulation
+        val pixels = pixels
+
+        for (row in top until bottom) {
+            val rowStart = row * width
+
+            for (index in rowStart + left until rowStart + right) {
+                val premultiplied = accumulation[index]
+                val alpha = premultiplied ushr 24
+
+                pixels[index] = when (alpha) {
+                    0 -> 0
+                    255 -> premultiplied
+                    else -> {
+                        val red = (((premultiplied shr 16) and 0xFF) * 255 / alpha).coerceAtMost(255)
+                        val green = (((premultiplied shr 8) and 0xFF) * 255 / alpha).coerceAtMost(255)
+                        val blue = ((premultiplied and 0xFF) * 255 / alpha).coerceAtMost(255)
+
+                        (alpha shl 24) or (red shl 16) or (green shl 8) or blue
+                    }
+                }
+            }
+        }
+    }
+
+}
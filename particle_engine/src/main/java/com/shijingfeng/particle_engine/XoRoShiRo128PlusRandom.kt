@@ -0,0 +1,77 @@
+package com.shijingfeng.particle_engine
+
+/** SplitMix64 增量 (黄金分割比) */
+private const val SPLIT_MIX_64_INCREMENT = -0x61c8864680b583ebL
+/** 2^-24, 把 24 位整数转换为 [0, 1) 浮点数 */
+private const val FLOAT_UNIT = 1F / (1 shl 24)
+
+/**
+ * Function: xoroshiro128+ 随机数生成器
+ * Date: 2026/10/17 18:02
+ * Description: 周期 2^128 - 1, 每次生成只需几次移位和异或, 没有 java.util.Random 的 AtomicLong CAS 开销.
+ * 不是线程安全的, 每个模拟线程使用自己的实例. 种子通过 SplitMix64 扩展为 128 位状态.
+ * @author ShiJingFeng
+ */
+class XoRoShiRo128PlusRandom(
+    /** 种子 */
+    seed: Long = System.nanoTime()
+) : ParticleRandom {
+
+    /** 状态 (高 64 位) */
+    private var mState0 = 0L
+    /** 状态 (低 64 位) */
+    private var mState1 = 0L
+
+    init {
+        setSeed(seed)
+    }
+
+    override fun setSeed(seed: Long) {
+        var splitMix = seed
+
+        splitMix += SPLIT_MIX_64_INCREMENT
+        mState0 = mix64(splitMix)
+        splitMix += SPLIT_MIX_64_INCREMENT
+        mState1 = mix64(splitMix)
+        // 状态不能全为 0
+        if (mState0 == 0L && mState1 == 0L) {
+            mState1 = 1L
+        }
+    }
+
+    override fun nextInt(bound: Int): Int {
+        // 乘法取高位, 避免取模运算 (bound 远小于 2^32 时偏差可以忽略)
+        return (((nextLong() ushr 32) * bound) ushr 32).toInt()
+    }
+
+    override fun nextFloat(): Float {
+        return (nextLong() ushr 40).toInt() * FLOAT_UNIT
+    }
+
+    override fun nextLong(): Long {
+        val state0 = mState0
+        var state1 = mState1
+        val result = state0 + state1
+
+        state1 = state1 xor state0
+        mState0 = java.lang.Long.rotateLeft(state0, 24) xor state1 xor (state1 shl 16)
+        mState1 = java.lang.Long.rotateLeft(state1, 37)
+        return result
+    }
+
+    override fun split(): ParticleRandom {
+        return XoRoShiRo128PlusRandom(nextLong())
+    }
+
+    /**
+     * SplitMix64 混淆函数
+     */
+    private fun mix64(value: Long): Long {
+        var z = value
+
+        z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+        z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+        return z xor (z ushr 31)
+    }
+
+}
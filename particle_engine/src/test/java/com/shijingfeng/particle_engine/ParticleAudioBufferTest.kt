@@ -0,0 +1,73 @@
+package com.shijingfeng.particle_engine
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+
+/** 生产者写入的帧数 */
+private const val PRODUCER_FRAME_COUNT = 2_000_000
+/** 帧内容取值数量 (帧序号对它取余后映射到 [0, 1), 可以被 Float 精确表示) */
+private const val FRAME_VALUE_COUNT = 4096
+/** 频段数量 */
+private const val BAND_COUNT = 16
+
+/**
+ * Function: ParticleAudioBuffer 单元测试
+ * Date: 2026/10/17 21:10
+ * Description: 生产者线程连续写入 振幅和所有频段都相同 的合成帧, 读取线程不断读取最新一帧,
+ * 读到的振幅和频段不一致说明读到了一半被覆盖的帧
+ * @author ShiJingFeng
+ */
+class ParticleAudioBufferTest {
+
+    @Test
+    fun readLatest_withoutNewFrame_returnsFalse() {
+        val buffer = ParticleAudioBuffer(BAND_COUNT)
+        val frame = ParticleAudioFrame(BAND_COUNT)
+
+        assertFalse(buffer.readLatest(frame))
+        buffer.push(0.5F, FloatArray(BAND_COUNT) { 0.25F })
+        assertTrue(buffer.readLatest(frame))
+        assertEquals(0.5F, frame.amplitude)
+        assertEquals(0.25F, frame.bands[BAND_COUNT - 1])
+        assertFalse(buffer.readLatest(frame))
+    }
+
+    @Test
+    fun readLatest_concurrentProducer_neverReturnsMixedFrame() {
+        val buffer = ParticleAudioBuffer(BAND_COUNT)
+        val finished = AtomicBoolean(false)
+        val producer = thread(name = "ParticleAudioBufferTest-Producer") {
+            val bands = FloatArray(BAND_COUNT)
+
+            for (i in 0 until PRODUCER_FRAME_COUNT) {
+                val value = (i % FRAME_VALUE_COUNT).toFloat() / FRAME_VALUE_COUNT
+
+                bands.fill(value)
+                buffer.push(value, bands)
+            }
+            finished.set(true)
+        }
+        val frame = ParticleAudioFrame(BAND_COUNT)
+        var lastSequence = 0L
+        var readCount = 0
+
+        while (!finished.get()) {
+            if (!buffer.readLatest(frame)) {
+                continue
+            }
+            ++readCount
+            assertTrue("sequence must increase", frame.sequence > lastSequence)
+            lastSequence = frame.sequence
+            for (band in 0 until BAND_COUNT) {
+                assertEquals("mixed frame at sequence ${frame.sequence}", frame.amplitude, frame.bands[band])
+            }
+        }
+        producer.join()
+        assertTrue("reader never observed a frame", readCount > 0)
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.shijingfeng.particle_engine
+
+/** 基准测试粒子数量 */
+private const val BENCHMARK_PARTICLE_COUNT = 100_000
+/** 基准测试尺寸 */
+private const val BENCHMARK_SIZE = 1080F
+/** 预热步数 (等待 JIT 编译) */
+private const val WARM_UP_STEP_COUNT = 600
+/** 计时步数 */
+private const val MEASURE_STEP_COUNT = 1200
+/** 模拟固定步长 (秒) */
+private const val STEP_SECONDS = 1F / 60F
+/** 纳秒转微秒 */
+private const val NANOS_PER_MICROSECOND = 1000.0
+
+/**
+ * Function: ParticleEngine 基准测试
+ * Date: 2026/10/17 21:40
+ * Description: 10 万粒子分别单线程和并行模拟, 输出每步平均耗时. 结果和机器负载有关, 因此不作为单元测试断言,
+ * 通过 ./gradlew :particle_engine:benchmark 单独运行
+ * @author ShiJingFeng
+ */
+fun main() {
+    measure("sequential", Int.MAX_VALUE)
+    measure("parallel", DEFAULT_PARALLEL_THRESHOLD)
+}
+
+/**
+ * 按指定并行阈值模拟并输出每步平均耗时
+ *
+ * @param name 名称
+ * @param parallelThreshold 并行模拟阈值
+ */
+private fun measure(name: String, parallelThreshold: Int) {
+    val engine = ParticleEngine(BENCHMARK_PARTICLE_COUNT).apply {
+        setSeed(0L)
+        this.parallelThreshold = parallelThreshold
+        setup(BENCHMARK_SIZE, BENCHMARK_SIZE / 4F)
+    }
+
+    for (i in 0 until WARM_UP_STEP_COUNT) {
+        engine.step(STEP_SECONDS)
+    }
+
+    val startTimeNanos = System.nanoTime()
+
+    for (i in 0 until MEASURE_STEP_COUNT) {
+        engine.step(STEP_SECONDS)
+    }
+
+    val stepTimeMicros = (System.nanoTime() - startTimeNanos) / NANOS_PER_MICROSECOND / MEASURE_STEP_COUNT
+
+    println("%-10s %d particles: %.1f us/step".format(name, BENCHMARK_PARTICLE_COUNT, stepTimeMicros))
+}
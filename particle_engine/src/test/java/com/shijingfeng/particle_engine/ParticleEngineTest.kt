@@ -0,0 +1,373 @@
+package com.shijingfeng.particle_engine
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.sqrt
+
+/** 测试尺寸 */
+private const val SIZE = 1000F
+/** 测试扩散圆(内圆) 半径 */
+private const val INNER_CIRCLE_RADIUS = 250F
+/** 测试种子 */
+private const val SEED = 20261017L
+/** 径向分布统计分组数量 */
+private const val RADIAL_BIN_COUNT = 10
+/** 径向分布每组占比允许的误差 */
+private const val RADIAL_BIN_TOLERANCE = 0.01F
+/** 保存状态的粒子数量 */
+private const val SAVED_PARTICLE_COUNT = 300
+/** 保存状态量化后允许的误差 (相对尺寸) */
+private const val STATE_TOLERANCE = 0.0001F
+
+/**
+ * Function: ParticleEngine 单元测试
+ * Date: 2026/10/17 21:30
+ * Description: 相同种子结果一致, 并行模拟和单线程模拟结果逐位一致, 初始化后直接处于稳定状态 (径向分布不随时间变化, 速度比例为 0 时不会卡住),
+ * 快照携带粒子数量指标, 自定义随机数生成器用于所有粒子, 自定义发射形状随尺寸缩放,
+ * 保存状态按新尺寸和扩散圆(内圆) 半径恢复 (自定义发射形状超出尺寸时同样正确)
+ * @author ShiJingFeng
+ */
+class ParticleEngineTest {
+
+    @Test
+    fun setSeed_sameSeed_producesIdenticalSnapshots() {
+        val first = createEngine(PARTICLE_NUMBER, SEED)
+        val second = createEngine(PARTICLE_NUMBER, SEED)
+
+        first.step(1F)
+        second.step(1F)
+        assertSnapshotEquals(first.acquireSnapshot(), second.acquireSnapshot())
+    }
+
+    @Test
+    fun setSeed_differentSeed_producesDifferentSnapshots() {
+        val first = createEngine(PARTICLE_NUMBER, SEED)
+        val second = createEngine(PARTICLE_NUMBER, SEED + 1)
+
+        first.step(1F)
+        second.step(1F)
+        assertFalse(first.acquireSnapshot().x.contentEquals(second.acquireSnapshot().x))
+    }
+
+    @Test
+    fun setRandom_customRandom_usedForRespawn() {
+        val random = CountingRandom(SEED)
+        val engine = ParticleEngine(PARTICLE_NUMBER).apply {
+            setRandom(random)
+            setup(SIZE, INNER_CIRCLE_RADIUS)
+        }
+
+        random.childCount = 0
+        // 推进多个寿命, 所有粒子都重生过
+        engine.step(10F)
+        assertTrue(random.childCount > 0)
+    }
+
+    @Test
+    fun step_snapshot_publishesParticleCounts() {
+        val engine = createEngine(PARTICLE_NUMBER, SEED)
+        val initialRespawnCount = engine.acquireSnapshot().totalRespawnCount
+
+        engine.step(1F)
+
+        val snapshot = engine.acquireSnapshot()
+
+        assertEquals(PARTICLE_NUMBER, snapshot.count)
+        assertEquals((0 until snapshot.count).count { snapshot.alpha[it] > 0 }, snapshot.liveCount)
+        assertTrue(snapshot.totalRespawnCount > initialRespawnCount)
+    }
+
+    @Test
+    fun step_parallel_matchesSequentialBitForBit() {
+        val count = DEFAULT_PARALLEL_THRESHOLD * 2
+        val parallel = createEngine(count, SEED)
+        val sequential = createEngine(count, SEED).apply { parallelThreshold = Int.MAX_VALUE }
+
+        // 发射比例小于1时, 死亡粒子是否重生也取决于随机数
+        parallel.setModulation(0.5F, 1.2F, 1.5F)
+        sequential.setModulation(0.5F, 1.2F, 1.5F)
+        for (i in 0 until 3) {
+            parallel.step(1F)
+            sequential.step(1F)
+            assertSnapshotEquals(parallel.acquireSnapshot(), sequential.acquireSnapshot())
+        }
+
+        val parallelBounds = FloatArray(4)
+        val sequentialBounds = FloatArray(4)
+
+        assertTrue(parallel.copyBounds(parallelBounds))
+        assertTrue(sequential.copyBounds(sequentialBounds))
+        assertArrayEquals(sequentialBounds, parallelBounds, 0F)
+    }
+
+    @Test
+    fun setup_radialDistribution_isSteadyState() {
+        val count = 100_000
+        val engine = createEngine(count, SEED)
+        val initial = radialHistogram(engine.acquireSnapshot())
+
+        // 最慢粒子的寿命约为 2.8 秒, 推进多个寿命后粒子已经全部重生过
+        for (second in 1..10) {
+            engine.step(1F)
+
+            val current = radialHistogram(engine.acquireSnapshot())
+
+            for (bin in 0 until RADIAL_BIN_COUNT) {
+                assertEquals("bin $bin after ${second}s", initial[bin], current[bin], RADIAL_BIN_TOLERANCE)
+            }
+        }
+    }
+
+    @Test(timeout = 10_000L)
+    fun setup_zeroSpeedScale_settlesWithoutHanging() {
+        val engine = ParticleEngine(PARTICLE_NUMBER).apply {
+            setSeed(SEED)
+            setModulation(1F, 0F, 1F)
+            setup(SIZE, INNER_CIRCLE_RADIUS)
+        }
+
+        // 调节器增加粒子时同样需要把新粒子放到稳定状态
+        engine.ensureCapacity(PARTICLE_NUMBER * 2)
+        engine.setActiveCount(PARTICLE_NUMBER * 2)
+        engine.step(1F)
+        assertEquals(PARTICLE_NUMBER * 2, engine.acquireSnapshot().count)
+    }
+
+    @Test
+    fun resize_customEmitterShape_scalesWithParticles() {
+        val engine = createEngine(PARTICLE_NUMBER, SEED)
+        val shapeX = 800F
+        val shapeY = 500F
+
+        // 所有采样点都在同一个位置, 向右发散, 关闭出生位置随机偏移
+        engine.setEmitterShape(FloatArray(4) { shapeX }, FloatArray(4) { shapeY }, FloatArray(4) { 1F }, FloatArray(4))
+        engine.setModulation(1F, 1F, 0F)
+        engine.resize(SIZE / 2F, INNER_CIRCLE_RADIUS / 2F)
+        // 推进多个寿命, 所有粒子都从缩放后的发射形状重生过
+        engine.step(10F)
+
+        val snapshot = engine.acquireSnapshot()
+
+        for (i in 0 until snapshot.count) {
+            if (snapshot.alpha[i] > 0) {
+                assertEquals("y[$i]", shapeY / 2F, snapshot.y[i], 0.001F)
+                assertTrue("x[$i]", snapshot.x[i] >= shapeX / 2F - 0.001F)
+            }
+        }
+    }
+
+    @Test
+    fun restoreState_sameRadiusRatio_scalesPositions() {
+        val source = createEngine(PARTICLE_NUMBER, SEED).apply { step(1F) }
+        val state = source.saveState(SAVED_PARTICLE_COUNT)!!
+        // 快照是插值后的坐标, 以按原尺寸恢复的结果作为参照
+        val saved = createEngine(PARTICLE_NUMBER, SEED + 1).apply {
+            assertTrue(restoreState(state, SIZE, INNER_CIRCLE_RADIUS))
+        }.acquireSnapshot()
+        val target = createEngine(PARTICLE_NUMBER, SEED + 1)
+
+        assertTrue(target.restoreState(state, SIZE / 2F, INNER_CIRCLE_RADIUS / 2F))
+
+        val restored = target.acquireSnapshot()
+
+        for (i in 0 until SAVED_PARTICLE_COUNT) {
+            val index = i * PARTICLE_NUMBER / SAVED_PARTICLE_COUNT
+
+            assertEquals("x[$index]", saved.x[index] / 2F, restored.x[index], SIZE * STATE_TOLERANCE)
+            assertEquals("y[$index]", saved.y[index] / 2F, restored.y[index], SIZE * STATE_TOLERANCE)
+        }
+    }
+
+    @Test
+    fun restoreState_differentRadius_keepsRingPosition() {
+        val source = createEngine(PARTICLE_NUMBER, SEED).apply { step(1F) }
+        val state = source.saveState(SAVED_PARTICLE_COUNT)!!
+        // 快照是插值后的坐标, 以按原尺寸恢复的结果作为参照
+        val saved = createEngine(PARTICLE_NUMBER, SEED + 1).apply {
+            assertTrue(restoreState(state, SIZE, INNER_CIRCLE_RADIUS))
+        }.acquireSnapshot()
+        val target = createEngine(PARTICLE_NUMBER, SEED + 1)
+        val radius = SIZE / 8F
+
+        assertTrue(target.restoreState(state, SIZE, radius))
+
+        val restored = target.acquireSnapshot()
+
+        for (i in 0 until SAVED_PARTICLE_COUNT) {
+            val index = i * PARTICLE_NUMBER / SAVED_PARTICLE_COUNT
+            val savedDistance = distanceToCenter(saved.x[index], saved.y[index])
+
+            if (savedDistance <= INNER_CIRCLE_RADIUS) {
+                continue
+            }
+
+            // 在圆环中的相对位置不变
+            val savedRatio = (savedDistance - INNER_CIRCLE_RADIUS) / (SIZE / 2F - INNER_CIRCLE_RADIUS)
+            val restoredRatio = (distanceToCenter(restored.x[index], restored.y[index]) - radius) / (SIZE / 2F - radius)
+
+            assertEquals("ratio[$index]", savedRatio, restoredRatio, STATE_TOLERANCE * 10)
+        }
+    }
+
+    @Test
+    fun restoreState_customEmitterOutsideSize_keepsPositions() {
+        // 竖屏全屏 View 中, 自定义发射形状 (View 坐标系) 可以远超出 1.5 倍尺寸
+        val shapeX = SIZE / 2F
+        val shapeY = SIZE * 1.8F
+        val source = createEngine(PARTICLE_NUMBER, SEED).apply {
+            setEmitterShape(FloatArray(4) { shapeX }, FloatArray(4) { shapeY }, FloatArray(4) { 1F }, FloatArray(4))
+            setModulation(1F, 1F, 0F)
+            step(10F)
+        }
+        val state = source.saveState(SAVED_PARTICLE_COUNT)!!
+        val target = createEngine(PARTICLE_NUMBER, SEED + 1).apply {
+            setEmitterShape(FloatArray(4) { shapeX }, FloatArray(4) { shapeY }, FloatArray(4) { 1F }, FloatArray(4))
+        }
+
+        // 自定义发射形状按尺寸等比缩放, 粒子也按尺寸等比缩放
+        assertTrue(target.restoreState(state, SIZE / 2F, INNER_CIRCLE_RADIUS / 2F))
+
+        val restored = target.acquireSnapshot()
+
+        for (i in 0 until SAVED_PARTICLE_COUNT) {
+            val index = i * PARTICLE_NUMBER / SAVED_PARTICLE_COUNT
+
+            assertEquals("y[$index]", shapeY / 2F, restored.y[index], SIZE * STATE_TOLERANCE)
+            assertTrue("x[$index]", restored.x[index] >= shapeX / 2F - SIZE * STATE_TOLERANCE)
+        }
+    }
+
+    @Test
+    fun restoreState_invalidState_fallsBackToSetup() {
+        val engine = createEngine(PARTICLE_NUMBER, SEED)
+
+        assertFalse(engine.restoreState(ShortArray(2), SIZE, INNER_CIRCLE_RADIUS))
+        assertEquals(PARTICLE_NUMBER, engine.acquireSnapshot().count)
+    }
+
+    /**
+     * 创建按测试尺寸初始化的粒子引擎
+     *
+     * @param count 粒子数量
+     * @param seed 随机种子
+     */
+    private fun createEngine(count: Int, seed: Long) = ParticleEngine(count).apply {
+        setSeed(seed)
+        setColors(intArrayOf(0xFFFF0000.toInt(), 0xFF00FF00.toInt()), intArrayOf(1, 3))
+        setup(SIZE, INNER_CIRCLE_RADIUS)
+    }
+
+    /**
+     * 可见粒子到中心距离的分布 (从扩散圆(内圆) 到外圆平均分组, 返回每组占比)
+     *
+     * @param snapshot 快照
+     */
+    private fun radialHistogram(snapshot: ParticleSnapshot): FloatArray {
+        val histogram = FloatArray(RADIAL_BIN_COUNT)
+        val center = SIZE / 2F
+        val ringThickness = center - INNER_CIRCLE_RADIUS
+        var visibleCount = 0
+
+        for (i in 0 until snapshot.count) {
+            if (snapshot.alpha[i] <= 0) {
+                continue
+            }
+
+            val dx = snapshot.x[i] - center
+            val dy = snapshot.y[i] - center
+            val bin = ((sqrt(dx * dx + dy * dy) - INNER_CIRCLE_RADIUS) / ringThickness * RADIAL_BIN_COUNT)
+                .toInt()
+                .coerceIn(0, RADIAL_BIN_COUNT - 1)
+
+            ++histogram[bin]
+            ++visibleCount
+        }
+        for (bin in 0 until RADIAL_BIN_COUNT) {
+            histogram[bin] /= visibleCount
+        }
+        return histogram
+    }
+
+    /**
+     * 统计派生的子随机数生成器调用次数的随机数生成器
+     *
+     * @param seed 种子
+     */
+    private class CountingRandom(seed: Long) : ParticleRandom {
+
+        /** 实际生成随机数的随机数生成器 */
+        private val mRandom = XoRoShiRo128PlusRandom(seed)
+        /** 根随机数生成器 (子随机数生成器的调用次数记在它上面) */
+        private var mRoot = this
+        /** 所有子随机数生成器生成随机数的次数 */
+        var childCount = 0
+
+        override fun setSeed(seed: Long) = mRandom.setSeed(seed)
+
+        override fun nextInt(bound: Int): Int {
+            count()
+            return mRandom.nextInt(bound)
+        }
+
+        override fun nextLong(): Long {
+            count()
+            return mRandom.nextLong()
+        }
+
+        override fun nextFloat(): Float {
+            count()
+            return mRandom.nextFloat()
+        }
+
+        override fun split() = CountingRandom(mRandom.nextLong()).also { it.mRoot = mRoot }
+
+        /**
+         * 子随机数生成器生成随机数时计数
+         */
+        private fun count() {
+            if (mRoot !== this) {
+                ++mRoot.childCount
+            }
+        }
+
+    }
+
+    /**
+     * 到测试中心的距离
+     *
+     * @param x X轴坐标
+     * @param y Y轴坐标
+     */
+    private fun distanceToCenter(x: Float, y: Float): Float {
+        val dx = x - SIZE / 2F
+        val dy = y - SIZE / 2F
+
+        return sqrt(dx * dx + dy * dy)
+    }
+
+    /**
+     * 逐位比较两个快照
+     *
+     * @param expected 期望快照
+     * @param actual 实际快照
+     */
+    private fun assertSnapshotEquals(expected: ParticleSnapshot, actual: ParticleSnapshot) {
+        val count = expected.count
+
+        assertEquals(count, actual.count)
+        for (i in 0 until count) {
+            assertEquals("x[$i]", expected.x[i].toRawBits(), actual.x[i].toRawBits())
+            assertEquals("y[$i]", expected.y[i].toRawBits(), actual.y[i].toRawBits())
+            assertEquals("alpha[$i]", expected.alpha[i], actual.alpha[i])
+            assertEquals("colorIndex[$i]", expected.colorIndex[i], actual.colorIndex[i])
+        }
+        assertEquals(expected.left.toRawBits(), actual.left.toRawBits())
+        assertEquals(expected.top.toRawBits(), actual.top.toRawBits())
+        assertEquals(expected.right.toRawBits(), actual.right.toRawBits())
+        assertEquals(expected.bottom.toRawBits(), actual.bottom.toRawBits())
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.shijingfeng.particle_engine
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/** 测试缓冲尺寸 (像素) */
+private const val BUFFER_SIZE = 64
+/** 测试粒子半径 */
+private const val PARTICLE_RADIUS = 1.7F
+
+/**
+ * Function: ParticleSplatRasterizer 单元测试
+ * Date: 2026/10/17 21:50
+ * Description: 粒子移走后上一帧写入的像素 (包括抗锯齿边缘) 全部被清除, 不会残留到之后的帧
+ * @author ShiJingFeng
+ */
+class ParticleSplatRasterizerTest {
+
+    @Test
+    fun rasterize_particleMovedAway_leavesNoStalePixels() {
+        val rasterizer = ParticleSplatRasterizer().apply { resize(BUFFER_SIZE, BUFFER_SIZE) }
+
+        // 粒子中心取在像素边界附近, 抗锯齿边缘覆盖包围盒边缘的像素
+        rasterizer.rasterize(createSnapshot(10F, 10F))
+
+        val firstFrame = rasterizer.pixels.copyOf()
+
+        assertTrue(firstFrame.any { it != 0 })
+        rasterizer.rasterize(createSnapshot(40.5F, 40.5F))
+        rasterizer.rasterize(createSnapshot(null, null))
+        assertArrayEquals(IntArray(BUFFER_SIZE * BUFFER_SIZE), rasterizer.pixels)
+        // 累加缓冲也必须清除干净, 同一位置再次绘制的结果和第一次相同
+        rasterizer.rasterize(createSnapshot(10F, 10F))
+        assertArrayEquals(firstFrame, rasterizer.pixels)
+    }
+
+    /**
+     * 创建只有一个粒子的快照
+     *
+     * @param x 粒子 X轴坐标 (为 null 时没有可见粒子)
+     * @param y 粒子 Y轴坐标
+     */
+    private fun createSnapshot(x: Float?, y: Float?) = ParticleSnapshot(1).apply {
+        colors = intArrayOf(0xFFFFFFFF.toInt())
+        particleRadius = PARTICLE_RADIUS
+        visible = true
+        if (x != null && y != null) {
+            this.x[0] = x
+            this.y[0] = y
+            alpha[0] = 255
+            count = 1
+            left = x - PARTICLE_RADIUS
+            top = y - PARTICLE_RADIUS
+            right = x + PARTICLE_RADIUS
+            bottom = y + PARTICLE_RADIUS
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.shijingfeng.widget_collection.annotation.define;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.LOCAL_VARIABLE;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Function: {@link com.shijingfeng.widget_collection.widget.ParticleDiffuseView} 粒子绘制方式 限制注解
+ * Date: 2026/10/17 10:12
+ * Description:
+ *
+ * @author ShiJingFeng
+ */
+@IntDef({
+    ParticleRenderMode.RENDER_MODE_CIRCLE,
+    ParticleRenderMode.RENDER_MODE_POINTS,
+    ParticleRenderMode.RENDER_MODE_VERTICES,
+    ParticleRenderMode.RENDER_MODE_SPLAT
+})
+@Target({
+    // 类属性
+    FIELD,
+    // 函数
+    METHOD,
+    // 函数参数
+    PARAMETER,
+    // 局部变量
+    LOCAL_VARIABLE
+})
+@Retention(SOURCE)
+public @interface ParticleRenderMode {
+
+    /** 绘制方式: 每个粒子调用一次 drawCircle */
+    int RENDER_MODE_CIRCLE = 0;
+    /** 绘制方式: 按透明度分组, 每组调用一次 drawPoints (圆形笔帽) */
+    int RENDER_MODE_POINTS = 1;
+    /** 绘制方式: 所有粒子写入同一个顶点缓冲, 每帧只调用一次 drawVertices (硬件加速需要 API 29) */
+    int RENDER_MODE_VERTICES = 2;
+    /** 绘制方式: 在CPU中把所有粒子以加法混合写入像素数组, 每帧只调用一次 drawBitmap (适合粒子数量非常多的情况) */
+    int RENDER_MODE_SPLAT = 3;
+
+}
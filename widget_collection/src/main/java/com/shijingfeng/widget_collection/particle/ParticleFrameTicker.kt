@@ -0,0 +1,101 @@
+package com.shijingfeng.widget_collection.particle
+
+import android.view.Choreographer
+
+/**
+ * Function: 粒子帧驱动器 (进程内共享)
+ * Date: 2026/10/17 18:55
+ * Description: 所有正在运行的粒子 View 注册到同一个 Choreographer 帧回调中, 每帧只回调一次, 依次驱动各个 View 的模拟,
+ * 避免每个 View 各自注册帧回调. 同时记录正在驱动的 View 数量, 用于在多个 View 之间分配每帧耗时预算.
+ * 只能在UI线程中使用.
+ * @author ShiJingFeng
+ */
+internal object ParticleFrameTicker : Choreographer.FrameCallback {
+
+    /**
+     * 帧回调接收方
+     */
+    interface Client {
+
+        /**
+         * 每帧回调 (UI线程)
+         *
+         * @param frameTimeNanos 当前帧的垂直同步时间戳 (纳秒)
+         */
+        fun onTick(frameTimeNanos: Long)
+
+    }
+
+    /** 已注册的接收方 */
+    private val mClients = ArrayList<Client>()
+    /** 回调时遍历用的副本 (回调过程中可能注册或注销, 复用数组避免每帧分配) */
+    private var mTickClients = arrayOfNulls<Client>(4)
+    /** 是否已经提交帧回调 */
+    private var mPosted = false
+
+    /** 所有 View 共享的每帧 (模拟 + 绘制) 耗时预算 (纳秒, 0 表示不限制) */
+    var frameBudgetNanos = 0L
+
+    /** 已注册的接收方数量 */
+    val clientCount: Int
+        get() = mClients.size
+
+    /**
+     * 注册 (已注册时不做任何事)
+     *
+     * @param client 接收方
+     */
+    fun register(client: Client) {
+        if (mClients.contains(client)) {
+            return
+        }
+        mClients.add(client)
+        if (!mPosted) {
+            mPosted = true
+            Choreographer.getInstance().postFrameCallback(this)
+        }
+    }
+
+    /**
+     * 注销 (没有接收方时不再提交帧回调)
+     *
+     * @param client 接收方
+     */
+    fun unregister(client: Client) {
+        mClients.remove(client)
+        if (mClients.isEmpty() && mPosted) {
+            mPosted = false
+            Choreographer.getInstance().removeFrameCallback(this)
+        }
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        mPosted = false
+
+        val count = mClients.size
+
+        if (mTickClients.size < count) {
+            mTickClients = arrayOfNulls(count)
+        }
+
+        val tickClients = mTickClients
+
+        for (i in 0 until count) {
+            tickClients[i] = mClients[i]
+        }
+        for (i in 0 until count) {
+            val client = tickClients[i]
+
+            tickClients[i] = null
+            // 本帧前面的接收方回调中注销的接收方不再回调
+            if (client != null && mClients.contains(client)) {
+                client.onTick(frameTimeNanos)
+            }
+        }
+        if (mClients.isNotEmpty() && !mPosted) {
+            mPosted = true
+            Choreographer.getInstance().postFrameCallback(this)
+        }
+    }
+
+}
@@ -0,0 +1,482 @@
+package com.shijingfeng.widget_collection.particle
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.ColorMatrix
+import android.graphics.ColorMatrixColorFilter
+import android.graphics.Paint
+import android.graphics.PorterDuff
+import android.graphics.PorterDuffXfermode
+import android.os.Build
+import com.shijingfeng.particle_engine.ParticleSnapshot
+import com.shijingfeng.particle_engine.ParticleSplatRasterizer
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_CIRCLE
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_POINTS
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_SPLAT
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_VERTICES
+
+/** 默认透明度分组数量 */
+internal const val DEFAULT_ALPHA_BUCKET_COUNT = 16
+/** 最大透明度分组数量 (透明度只有 256 级) */
+private const val MAX_ALPHA_BUCKET_COUNT = 256
+
+/** 最大拖尾保留比例 (为 1 时拖尾永远不会消失) */
+private const val MAX_TRAIL_FADE = 0.99F
+/**
+ * 拖尾每次衰减时在按比例衰减之后额外减去的透明度 (0 ~ 255).
+ * 只按比例衰减时 8 位透明度每次都会四舍五入, 较小的透明度乘以保留比例后又舍入回原值, 永远不会消失
+ */
+private const val TRAIL_FADE_FLOOR = 1F
+
+/** 每个粒子的顶点数量 (两个三角形组成的正方形) */
+private const val VERTICES_PER_PARTICLE = 6
+
+/**
+ * Function: 粒子绘制器
+ * Date: 2026/10/17 14:20
+ * Description: 把 [ParticleSnapshot] 按指定绘制方式画到 Canvas 上, 由 ParticleDiffuseView 和 ParticleDiffuseSurfaceView 共用.
+ * 只能在同一个绘制线程中使用.
+ * @author ShiJingFeng
+ */
+internal class ParticleRenderer(
+    /** 粒子数量 */
+    capacity: Int
+) {
+
+    /** 画笔 */
+    private val mPaint = Paint().apply {
+        // 画笔颜色(白色)
+        color = Color.WHITE
+        // 抗锯齿(true)
+        isAntiAlias = true
+    }
+    /** 批量绘制画笔 (drawPoints 使用圆形笔帽, 笔宽为粒子直径) */
+    private val mPointPaint = Paint().apply {
+        color = Color.WHITE
+        isAntiAlias = true
+        style = Paint.Style.STROKE
+        strokeCap = Paint.Cap.ROUND
+    }
+
+    /** 每个分组 (颜色 x 透明度) 的粒子数量 (计数排序使用, 排序过程中复用为写入游标) */
+    private var mBucketSize = IntArray(DEFAULT_ALPHA_BUCKET_COUNT)
+    /** 按分组排列的粒子坐标缓冲 (x0, y0, x1, y1 ...), 每组连续存放 */
+    private var mPointBuffer = FloatArray(capacity * 2)
+    /** 按颜色分组排列的粒子下标缓冲 (逐个绘制时使用) */
+    private var mOrderBuffer = IntArray(capacity)
+    /** 顶点缓冲 (每个粒子 6 个顶点, 每个顶点 x, y 两个值) */
+    private var mVertexBuffer = FloatArray(capacity * VERTICES_PER_PARTICLE * 2)
+    /** 顶点颜色缓冲 (每个顶点一个颜色值, 透明度写入颜色的 alpha 通道) */
+    private var mVertexColorBuffer = IntArray(capacity * VERTICES_PER_PARTICLE)
+    /** 软件光栅化器 (用于 [RENDER_MODE_SPLAT] 绘制方式) */
+    private val mSplatRasterizer = ParticleSplatRasterizer()
+    /** 软件光栅化结果位图 (和 Canvas 尺寸一致, 尺寸变化时重新创建) */
+    private var mSplatBitmap: Bitmap? = null
+    /** 拖尾离屏位图 (跨帧保留, 和 Canvas 尺寸一致) */
+    private var mTrailBitmap: Bitmap? = null
+    /** 拖尾离屏 Canvas */
+    private var mTrailCanvas: Canvas? = null
+    /** 拖尾后台离屏位图 (衰减时把上一帧画面写入后台位图, 再和前台位图交换, 不能在同一个位图上读写) */
+    private var mTrailBackBitmap: Bitmap? = null
+    /** 拖尾后台离屏 Canvas */
+    private var mTrailBackCanvas: Canvas? = null
+    /** 拖尾衰减画笔 (透明度 = 透明度 * 保留比例 - [TRAIL_FADE_FLOOR], 结果限制在 [0, 255], 直接替换目标像素) */
+    private val mTrailFadePaint = Paint().apply {
+        xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
+    }
+    /** 拖尾离屏位图中最后绘制的快照序号 (同一个快照重复绘制时不再衰减) */
+    private var mTrailSequence = 0L
+
+    /** 粒子绘制方式 */
+    @ParticleRenderMode
+    var renderMode = RENDER_MODE_CIRCLE
+
+    /** 透明度分组数量 (用于 [RENDER_MODE_POINTS] 绘制方式, 范围 [1, 256]) */
+    var alphaBucketCount = DEFAULT_ALPHA_BUCKET_COUNT
+        set(alphaBucketCount) {
+            val bucketCount = when {
+                alphaBucketCount < 1 -> 1
+                alphaBucketCount > MAX_ALPHA_BUCKET_COUNT -> MAX_ALPHA_BUCKET_COUNT
+                else -> alphaBucketCount
+            }
+
+            field = bucketCount
+        }
+
+    /** 拖尾保留比例 (每次绘制新快照前, 离屏位图中上一帧画面保留的比例, 范围 [0, 0.99], 0 表示关闭拖尾) */
+    var trailFade = 0F
+        set(trailFade) {
+            field = trailFade.coerceIn(0F, MAX_TRAIL_FADE)
+            if (field == 0F) {
+                releaseTrail()
+            } else {
+                // 颜色矩阵作用于非预乘颜色: 颜色不变, 只衰减透明度
+                mTrailFadePaint.colorFilter = ColorMatrixColorFilter(ColorMatrix(floatArrayOf(
+                    1F, 0F, 0F, 0F, 0F,
+                    0F, 1F, 0F, 0F, 0F,
+                    0F, 0F, 1F, 0F, 0F,
+                    0F, 0F, 0F, field, -TRAIL_FADE_FLOOR
+                )))
+            }
+        }
+
+    /**
+     * 绘制粒子
+     */
+    fun draw(canvas: Canvas, snapshot: ParticleSnapshot) {
+        if (!snapshot.visible) {
+            return
+        }
+        if (trailFade > 0F) {
+            drawParticleTrail(canvas, snapshot)
+        } else {
+            drawParticles(canvas, snapshot)
+        }
+    }
+
+    /**
+     * 按绘制方式绘制粒子
+     */
+    private fun drawParticles(canvas: Canvas, snapshot: ParticleSnapshot) {
+        when (renderMode) {
+            RENDER_MODE_POINTS -> drawParticlePoints(canvas, snapshot)
+            RENDER_MODE_SPLAT -> drawParticleSplats(canvas, snapshot)
+            RENDER_MODE_VERTICES -> {
+                // 硬件加速 Canvas 在 API 29 之前不支持 drawVertices, 回退为逐个绘制
+                if (!canvas.isHardwareAccelerated || Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    drawParticleVertices(canvas, snapshot)
+                } else {
+                    drawParticleCircles(canvas, snapshot)
+                }
+            }
+            else -> drawParticleCircles(canvas, snapshot)
+        }
+    }
+
+    /**
+     * 绘制粒子拖尾: 每个新快照先把离屏位图整体衰减 (通过颜色矩阵写入后台位图后交换), 再把粒子画到离屏位图上, 最后只调用一次 drawBitmap.
+     * 旧的粒子位置逐渐变淡, 看起来像是更多的粒子, 代价只是每帧一次衰减.
+     * 衰减在按比例缩小透明度之后再减去 [TRAIL_FADE_FLOOR], 静止画面最多 255 帧后离屏位图完全透明, 不会残留
+     */
+    private fun drawParticleTrail(canvas: Canvas, snapshot: ParticleSnapshot) {
+        val width = canvas.width
+        val height = canvas.height
+
+        if (width <= 0 || height <= 0) {
+            return
+        }
+
+        var bitmap = mTrailBitmap
+        var trailCanvas = mTrailCanvas
+        var backBitmap = mTrailBackBitmap
+        var backCanvas = mTrailBackCanvas
+
+        if (bitmap == null || trailCanvas == null || backBitmap == null || backCanvas == null
+            || bitmap.width != width || bitmap.height != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            trailCanvas = Canvas(bitmap)
+            backBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            backCanvas = Canvas(backBitmap)
+            mTrailSequence = 0L
+        }
+        // 同一个快照重复绘制 (例如其他原因引起的重绘) 时不衰减, 拖尾长度只和模拟帧数有关
+        if (snapshot.sequence != mTrailSequence) {
+            mTrailSequence = snapshot.sequence
+            // 衰减后的上一帧画面整体替换后台位图, 然后交换前后台
+            backCanvas.drawBitmap(bitmap, 0F, 0F, mTrailFadePaint)
+
+            val fadedBitmap = backBitmap
+            val fadedCanvas = backCanvas
+
+            backBitmap = bitmap
+            backCanvas = trailCanvas
+            bitmap = fadedBitmap
+            trailCanvas = fadedCanvas
+            drawParticles(trailCanvas, snapshot)
+        }
+        mTrailBitmap = bitmap
+        mTrailCanvas = trailCanvas
+        mTrailBackBitmap = backBitmap
+        mTrailBackCanvas = backCanvas
+        canvas.drawBitmap(bitmap, 0F, 0F, null)
+    }
+
+    /**
+     * 绘制粒子 (每个粒子调用一次 drawCircle, 同一颜色的粒子连续绘制, 每种颜色只切换一次画笔颜色)
+     */
+    private fun drawParticleCircles(canvas: Canvas, snapshot: ParticleSnapshot) {
+        val count = snapshot.count
+        val radius = snapshot.particleRadius
+        val colors = snapshot.colors
+        val colorCount = colors.size
+        val x = snapshot.x
+        val y = snapshot.y
+        val alpha = snapshot.alpha
+
+        if (colorCount == 1) {
+            mPaint.color = colors[0]
+            for (i in 0 until count) {
+                mPaint.alpha = alpha[i]
+                canvas.drawCircle(x[i], y[i], radius, mPaint)
+            }
+            return
+        }
+
+        // 计数排序: 按颜色分组
+        val colorIndex = snapshot.colorIndex
+        val bucketSize = obtainBucketSize(colorCount)
+
+        if (mOrderBuffer.size < count) {
+            mOrderBuffer = IntArray(count)
+        }
+
+        val order = mOrderBuffer
+
+        for (i in 0 until count) {
+            ++bucketSize[colorIndex[i]]
+        }
+        toBucketStart(bucketSize, colorCount)
+        for (i in 0 until count) {
+            order[bucketSize[colorIndex[i]]++] = i
+        }
+        // 写入后 bucketSize[bucket] 为该组结束位置, 即下一组的起始位置
+        var bucketStart = 0
+        for (color in 0 until colorCount) {
+            val bucketEnd = bucketSize[color]
+
+            if (bucketEnd > bucketStart) {
+                mPaint.color = colors[color]
+                for (position in bucketStart until bucketEnd) {
+                    val i = order[position]
+
+                    mPaint.alpha = alpha[i]
+                    canvas.drawCircle(x[i], y[i], radius, mPaint)
+                }
+            }
+            bucketStart = bucketEnd
+        }
+    }
+
+    /**
+     * 绘制粒子 (按 颜色 x 透明度 分组, 每组调用一次 drawPoints)
+     * 透明度被量化到分组中心值, 最大误差为 128 / 分组数量
+     */
+    private fun drawParticlePoints(canvas: Canvas, snapshot: ParticleSnapshot) {
+        val count = snapshot.count
+        val colors = snapshot.colors
+        val colorCount = colors.size
+        val alphaBucketCount = alphaBucketCount
+        val bucketCount = colorCount * alphaBucketCount
+        val bucketSize = obtainBucketSize(bucketCount)
+        val x = snapshot.x
+        val y = snapshot.y
+        val alpha = snapshot.alpha
+        val colorIndex = snapshot.colorIndex
+
+        // 粒子数量增加后按需扩大缓冲
+        if (mPointBuffer.size < count * 2) {
+            mPointBuffer = FloatArray(count * 2)
+        }
+
+        val points = mPointBuffer
+
+        // 计数排序: 统计每组粒子数量 (完全透明的粒子不参与绘制)
+        for (i in 0 until count) {
+            if (alpha[i] > 0) {
+                ++bucketSize[colorIndex[i] * alphaBucketCount + (alpha[i] * alphaBucketCount shr 8)]
+            }
+        }
+        toBucketStart(bucketSize, bucketCount)
+        // 按组写入坐标
+        for (i in 0 until count) {
+            if (alpha[i] > 0) {
+                val position = bucketSize[colorIndex[i] * alphaBucketCount + (alpha[i] * alphaBucketCount shr 8)]++ shl 1
+
+                points[position] = x[i]
+                points[position + 1] = y[i]
+            }
+        }
+        mPointPaint.strokeWidth = snapshot.particleRadius * 2F
+        // 写入后 bucketSize[bucket] 为该组结束位置, 即下一组的起始位置
+        var bucketStart = 0
+        for (bucket in 0 until bucketCount) {
+            val bucketEnd = bucketSize[bucket]
+            val size = bucketEnd - bucketStart
+
+            if (size > 0) {
+                val alphaBucket = bucket % alphaBucketCount
+
+                mPointPaint.color = colors[bucket / alphaBucketCount]
+                // 分组中心透明度: (alphaBucket + 0.5) * 256 / alphaBucketCount
+                mPointPaint.alpha = (((alphaBucket shl 9) + 256) / (alphaBucketCount shl 1)).coerceIn(1, 255)
+                canvas.drawPoints(points, bucketStart shl 1, size shl 1, mPointPaint)
+            }
+            bucketStart = bucketEnd
+        }
+    }
+
+    /**
+     * 绘制粒子 (所有粒子写入同一个顶点缓冲, 只调用一次 drawVertices)
+     * 每个粒子为边长等于粒子直径的正方形, 粒子半径很小时和圆形几乎没有差别
+     */
+    private fun drawParticleVertices(canvas: Canvas, snapshot: ParticleSnapshot) {
+        val radius = snapshot.particleRadius
+        val palette = snapshot.colors
+
+        // 粒子数量增加后按需扩大缓冲
+        if (mVertexColorBuffer.size < snapshot.count * VERTICES_PER_PARTICLE) {
+            mVertexBuffer = FloatArray(snapshot.count * VERTICES_PER_PARTICLE * 2)
+            mVertexColorBuffer = IntArray(snapshot.count * VERTICES_PER_PARTICLE)
+        }
+
+        val vertices = mVertexBuffer
+        val colors = mVertexColorBuffer
+        val x = snapshot.x
+        val y = snapshot.y
+        val colorIndex = snapshot.colorIndex
+        var vertexPosition = 0
+        var colorPosition = 0
+
+        for (i in 0 until snapshot.count) {
+            val alpha = snapshot.alpha[i]
+
+            // 完全透明的粒子不写入缓冲
+            if (alpha == 0) {
+                continue
+            }
+
+            val left = x[i] - radius
+            val top = y[i] - radius
+            val right = x[i] + radius
+            val bottom = y[i] + radius
+            val color = (alpha shl 24) or (palette[colorIndex[i]] and 0x00FFFFFF)
+
+            // 三角形1: 左上, 右上, 左下
+            vertices[vertexPosition++] = left
+            vertices[vertexPosition++] = top
+            vertices[vertexPosition++] = right
+            vertices[vertexPosition++] = top
+            vertices[vertexPosition++] = left
+            vertices[vertexPosition++] = bottom
+            // 三角形2: 右上, 右下, 左下
+            vertices[vertexPosition++] = right
+            vertices[vertexPosition++] = top
+            vertices[vertexPosition++] = right
+            vertices[vertexPosition++] = bottom
+            vertices[vertexPosition++] = left
+            vertices[vertexPosition++] = bottom
+            colors.fill(color, colorPosition, colorPosition + VERTICES_PER_PARTICLE)
+            colorPosition += VERTICES_PER_PARTICLE
+        }
+        if (vertexPosition == 0) {
+            return
+        }
+        mPaint.alpha = 255
+        canvas.drawVertices(
+            Canvas.VertexMode.TRIANGLES,
+            vertexPosition,
+            vertices,
+            0,
+            null,
+            0,
+            colors,
+            0,
+            null,
+            0,
+            0,
+            mPaint
+        )
+    }
+
+    /**
+     * 绘制粒子 (在CPU中光栅化到像素数组, 只把变化区域上传到位图, 只调用一次 drawBitmap)
+     */
+    private fun drawParticleSplats(canvas: Canvas, snapshot: ParticleSnapshot) {
+        val width = canvas.width
+        val height = canvas.height
+
+        if (width <= 0 || height <= 0) {
+            return
+        }
+
+        var bitmap = mSplatBitmap
+
+        // 旧位图可能还被已录制的绘制指令引用, 不主动 recycle, 交给 GC 回收
+        if (bitmap == null || bitmap.width != width || bitmap.height != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            mSplatBitmap = bitmap
+            mSplatRasterizer.resize(width, height)
+        }
+
+        val rasterizer = mSplatRasterizer
+
+        if (rasterizer.rasterize(snapshot)) {
+            val left = rasterizer.dirtyLeft
+            val top = rasterizer.dirtyTop
+
+            bitmap.setPixels(
+                rasterizer.pixels,
+                top * width + left,
+                width,
+                left,
+                top,
+                rasterizer.dirtyRight - left,
+                rasterizer.dirtyBottom - top
+            )
+        }
+        canvas.drawBitmap(bitmap, 0F, 0F, null)
+    }
+
+    /**
+     * 释放软件光栅化缓冲 (View 分离或 Surface 销毁时调用, 下次绘制时按需重新创建)
+     */
+    fun release() {
+        mSplatBitmap = null
+        releaseTrail()
+        mSplatRasterizer.resize(0, 0)
+    }
+
+    /**
+     * 释放拖尾离屏位图 (下次绘制拖尾时按需重新创建)
+     */
+    private fun releaseTrail() {
+        mTrailBitmap = null
+        mTrailCanvas = null
+        mTrailBackBitmap = null
+        mTrailBackCanvas = null
+    }
+
+    /**
+     * 获取清零后的分组计数数组
+     *
+     * @param bucketCount 分组数量
+     */
+    private fun obtainBucketSize(bucketCount: Int): IntArray {
+        if (mBucketSize.size < bucketCount) {
+            mBucketSize = IntArray(bucketCount)
+        } else {
+            mBucketSize.fill(0, 0, bucketCount)
+        }
+        return mBucketSize
+    }
+
+    /**
+     * 把每组粒子数量转换为每组在缓冲中的起始位置
+     *
+     * @param bucketSize 分组计数数组
+     * @param bucketCount 分组数量
+     */
+    private fun toBucketStart(bucketSize: IntArray, bucketCount: Int) {
+        var start = 0
+
+        for (bucket in 0 until bucketCount) {
+            val size = bucketSize[bucket]
+
+            bucketSize[bucket] = start
+            start += size
+        }
+    }
+
+}
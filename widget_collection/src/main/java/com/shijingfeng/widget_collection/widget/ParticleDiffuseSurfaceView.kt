@@ -0,0 +1,290 @@
+package com.shijingfeng.widget_collection.widget
+
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.PixelFormat
+import android.graphics.PorterDuff
+import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
+import android.util.AttributeSet
+import android.view.Choreographer
+import android.view.SurfaceHolder
+import android.view.SurfaceView
+import androidx.annotation.ColorInt
+import com.shijingfeng.particle_engine.PARTICLE_NUMBER
+import com.shijingfeng.particle_engine.ParticleAudioBuffer
+import com.shijingfeng.particle_engine.ParticleAudioReactor
+import com.shijingfeng.particle_engine.ParticleEngine
+import com.shijingfeng.widget_collection.R
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_CIRCLE
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_POINTS
+import com.shijingfeng.widget_collection.particle.DEFAULT_ALPHA_BUCKET_COUNT
+import com.shijingfeng.widget_collection.particle.ParticleRenderer
+
+/** 默认粒子颜色 白色 */
+private const val DEFAULT_PARTICLE_COLOR = Color.WHITE
+
+/**
+ * Function: 粒子扩散效果 SurfaceView (仿网易云空灵轻音特效)
+ * Date: 2026/10/17 15:02
+ * Description: 和 [ParticleDiffuseView] 共用粒子引擎, 但模拟和绘制都在独立的渲染线程中进行, 直接绘制到 Surface,
+ * 不占用UI线程和 RenderThread, 适合全屏播放器背景等重负载场景
+ * @author ShiJingFeng
+ */
+class ParticleDiffuseSurfaceView @JvmOverloads constructor(
+    /** Context环境  */
+    context: Context,
+    attrs: AttributeSet? = null,
+    defStyleAttr: Int = 0,
+    defStyleRes: Int = 0
+) : SurfaceView(context, attrs, defStyleAttr, defStyleRes), SurfaceHolder.Callback {
+
+    /** 粒子引擎 (只在渲染线程中访问) */
+    private val mEngine = ParticleEngine(PARTICLE_NUMBER)
+    /** 粒子绘制器 (只在渲染线程中访问) */
+    private val mRenderer = ParticleRenderer(PARTICLE_NUMBER)
+
+    /** 粒子颜色 */
+    @ColorInt
+    private var mParticleColor = DEFAULT_PARTICLE_COLOR
+    /** 粒子绘制方式 */
+    @ParticleRenderMode
+    private var mRenderMode = RENDER_MODE_CIRCLE
+    /** 透明度分组数量 */
+    private var mAlphaBucketCount = DEFAULT_ALPHA_BUCKET_COUNT
+    /** 扩散圆(内圆) 半径 (0 表示使用默认值: 尺寸的四分之一) */
+    private var mInnerCircleRadius = 0F
+    /** 音频帧缓冲 (为 null 时不响应音频, 由UI线程设置, 渲染线程读取) */
+    @Volatile
+    private var mAudioBuffer: ParticleAudioBuffer? = null
+    /** 音频响应器 (只在渲染线程中访问) */
+    private val mAudioReactor = ParticleAudioReactor()
+    /** 随机种子 (Surface 尺寸变化重新初始化前设置, null 表示不固定种子) */
+    private var mRandomSeed: Long? = null
+
+    /** Surface 锁 (保证 surfaceDestroyed 返回后渲染线程不再访问 Surface) */
+    private val mSurfaceLock = Any()
+    /** Surface 是否可用 (受 mSurfaceLock 保护) */
+    private var mSurfaceValid = false
+
+    /** 渲染线程 */
+    private var mRenderThread: HandlerThread? = null
+    /** 渲染线程 Handler */
+    private var mRenderHandler: Handler? = null
+    /** 是否正在渲染 (只在渲染线程中访问) */
+    private var mRendering = false
+    /** 帧回调 (由渲染线程的 Choreographer 驱动) */
+    private val mFrameCallback = Choreographer.FrameCallback { frameTimeNanos -> onFrame(frameTimeNanos) }
+
+    init {
+        context.obtainStyledAttributes(attrs, R.styleable.ParticleDiffuseSurfaceView).apply {
+            mInnerCircleRadius = getDimension(R.styleable.ParticleDiffuseSurfaceView_radius, 0F)
+            mParticleColor = getColor(R.styleable.ParticleDiffuseSurfaceView_color, DEFAULT_PARTICLE_COLOR)
+            mRenderMode = getInt(R.styleable.ParticleDiffuseSurfaceView_particleRenderMode, RENDER_MODE_CIRCLE)
+            mAlphaBucketCount = getInt(R.styleable.ParticleDiffuseSurfaceView_particleAlphaBucketCount, DEFAULT_ALPHA_BUCKET_COUNT)
+            //一定要回收，否则会内存泄漏
+            recycle()
+        }
+        // 透明背景, 粒子叠加在下层内容之上
+        holder.setFormat(PixelFormat.TRANSLUCENT)
+        holder.addCallback(this)
+    }
+
+    override fun surfaceCreated(holder: SurfaceHolder) {
+        synchronized(mSurfaceLock) {
+            mSurfaceValid = true
+        }
+        startRenderThread()
+    }
+
+    override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {
+        val size = if (width > height) height.toFloat() else width.toFloat()
+        // 默认扩展圆(内圆)半径为宽的一半
+        val innerCircleRadius = if (mInnerCircleRadius.toInt() == 0) size / 4F else mInnerCircleRadius
+        val color = mParticleColor
+        val renderMode = mRenderMode
+        val alphaBucketCount = mAlphaBucketCount
+        val randomSeed = mRandomSeed
+
+        runOnRenderThread {
+            randomSeed?.let { mEngine.setSeed(it) }
+            mEngine.setColors(intArrayOf(color))
+            mRenderer.renderMode = renderMode
+            mRenderer.alphaBucketCount = alphaBucketCount
+            mEngine.setup(size, innerCircleRadius)
+            startRendering()
+        }
+    }
+
+    override fun surfaceDestroyed(holder: SurfaceHolder) {
+        // 等待渲染线程当前帧绘制完成, 之后不再访问 Surface
+        synchronized(mSurfaceLock) {
+            mSurfaceValid = false
+        }
+        stopRenderThread()
+    }
+
+    /**
+     * 启动渲染线程
+     */
+    private fun startRenderThread() {
+        if (mRenderThread != null) {
+            return
+        }
+
+        val thread = HandlerThread("ParticleDiffuseSurfaceView-Render").apply { start() }
+
+        mRenderThread = thread
+        mRenderHandler = Handler(thread.looper)
+    }
+
+    /**
+     * 停止渲染线程
+     */
+    private fun stopRenderThread() {
+        runOnRenderThread {
+            mRendering = false
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback)
+            mRenderer.release()
+        }
+        mRenderThread?.quitSafely()
+        mRenderThread = null
+        mRenderHandler = null
+    }
+
+    /**
+     * 在渲染线程中执行
+     *
+     * @param action 回调函数
+     */
+    private fun runOnRenderThread(action: () -> Unit) {
+        mRenderHandler?.post(action)
+    }
+
+    /**
+     * 开始渲染 (渲染线程调用)
+     */
+    private fun startRendering() {
+        if (mRendering) {
+            return
+        }
+        mRendering = true
+        mEngine.resetClock()
+        // 渲染线程有自己的 Looper, 因此也有自己的 Choreographer
+        Choreographer.getInstance().postFrameCallback(mFrameCallback)
+    }
+
+    /**
+     * 帧回调 (渲染线程调用)
+     *
+     * @param frameTimeNanos 当前帧的垂直同步时间戳 (纳秒)
+     */
+    private fun onFrame(frameTimeNanos: Long) {
+        if (!mRendering) {
+            return
+        }
+
+        val audioBuffer = mAudioBuffer
+
+        // 每次步进前读取最新音频帧
+        if (audioBuffer != null) {
+            mAudioReactor.update(audioBuffer, mEngine, frameTimeNanos)
+        } else {
+            mAudioReactor.detach(mEngine)
+        }
+        mEngine.advance(frameTimeNanos)
+        drawFrame()
+        Choreographer.getInstance().postFrameCallback(mFrameCallback)
+    }
+
+    /**
+     * 绘制一帧到 Surface (渲染线程调用)
+     */
+    private fun drawFrame() = synchronized(mSurfaceLock) {
+        if (!mSurfaceValid) {
+            return@synchronized
+        }
+
+        val canvas: Canvas = (if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            holder.lockHardwareCanvas()
+        } else {
+            holder.lockCanvas()
+        }) ?: return@synchronized
+
+        try {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR)
+            mRenderer.draw(canvas, mEngine.acquireSnapshot())
+        } finally {
+            holder.unlockCanvasAndPost(canvas)
+        }
+    }
+
+    /**
+     * 当View销毁时会调用
+     */
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        stopRenderThread()
+    }
+
+    /**
+     * 扩展圆(内圆) 半径 (Surface 尺寸变化时生效)
+     */
+    var radius: Float
+        get() = this.mInnerCircleRadius
+        set(radius) {
+            this.mInnerCircleRadius = radius
+        }
+
+    /**
+     * 音频帧缓冲 (振幅控制粒子发射数量和速度, 低频控制发射扩散, 为 null 时不响应音频)
+     */
+    var audioBuffer: ParticleAudioBuffer?
+        get() = this.mAudioBuffer
+        set(audioBuffer) {
+            this.mAudioBuffer = audioBuffer
+        }
+
+    /**
+     * 随机种子 (Surface 尺寸变化时生效, 相同种子和尺寸得到相同的粒子动画)
+     */
+    var randomSeed: Long?
+        get() = this.mRandomSeed
+        set(randomSeed) {
+            this.mRandomSeed = randomSeed
+        }
+
+    /**
+     * 粒子颜色
+     */
+    var color: Int
+        @ColorInt get() = this.mParticleColor
+        set(@ColorInt color) {
+            this.mParticleColor = color
+            runOnRenderThread { mEngine.setColors(intArrayOf(color)) }
+        }
+
+    /**
+     * 粒子绘制方式
+     */
+    var renderMode: Int
+        @ParticleRenderMode get() = this.mRenderMode
+        set(@ParticleRenderMode renderMode) {
+            this.mRenderMode = renderMode
+            runOnRenderThread { mRenderer.renderMode = renderMode }
+        }
+
+    /**
+     * 透明度分组数量 (用于 [RENDER_MODE_POINTS] 绘制方式, 范围 [1, 256])
+     */
+    var alphaBucketCount: Int
+        get() = this.mAlphaBucketCount
+        set(alphaBucketCount) {
+            this.mAlphaBucketCount = alphaBucketCount
+            runOnRenderThread { mRenderer.alphaBucketCount = alphaBucketCount }
+        }
+
+}
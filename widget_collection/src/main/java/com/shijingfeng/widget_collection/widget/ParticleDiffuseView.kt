@@ -1,36 +1,68 @@
 package com.shijingfeng.widget_collection.widget
 
-import android.animation.ValueAnimator
-import android.animation.ValueAnimator.INFINITE
 import android.content.Context
 import android.graphics.*
+import android.os.Build
+import android.os.Bundle
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.Parcelable
 import android.util.AttributeSet
 import android.view.View
-import android.view.animation.LinearInterpolator
+import android.view.ViewTreeObserver
 import androidx.annotation.AnyThread
 import androidx.annotation.ColorInt
+import com.shijingfeng.particle_engine.DEFAULT_PARALLEL_THRESHOLD
+import com.shijingfeng.particle_engine.EMITTER_TABLE_SIZE
+import com.shijingfeng.particle_engine.PARTICLE_NUMBER
+import com.shijingfeng.particle_engine.ParticleAudioBuffer
+import com.shijingfeng.particle_engine.ParticleAudioReactor
+import com.shijingfeng.particle_engine.ParticleCountGovernor
+import com.shijingfeng.particle_engine.ParticleEngine
+import com.shijingfeng.particle_engine.ParticleFrameMetrics
+import com.shijingfeng.particle_engine.ParticleRollingPercentile
+import com.shijingfeng.particle_engine.ParticleSnapshot
+import com.shijingfeng.particle_engine.getParticleCountForRing
 import com.shijingfeng.widget_collection.R
-import com.shijingfeng.widget_collection.util.coordinateToRadian
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_CIRCLE
+import com.shijingfeng.widget_collection.annotation.define.ParticleRenderMode.RENDER_MODE_POINTS
+import com.shijingfeng.widget_collection.entity.ParticleMultiColor
+import com.shijingfeng.widget_collection.particle.DEFAULT_ALPHA_BUCKET_COUNT
+import com.shijingfeng.widget_collection.particle.ParticleFrameTicker
+import com.shijingfeng.widget_collection.particle.ParticleRenderer
 import com.shijingfeng.widget_collection.util.runOnUiThread
-import java.util.*
-import kotlin.math.cos
-import kotlin.math.sin
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.math.ceil
+import kotlin.math.floor
 
 /** 默认粒子颜色 白色 */
 private const val DEFAULT_PARTICLE_COLOR = Color.WHITE
 
-/** 比例基准值 */
-private const val SCALE_BASE_VALUE = 1F / 1000F
-/** 默认粒子半径大小比例值 */
-private const val DEFAULT_PARTICLE_RADIUS_SCALE_VALUE = 1.7F * SCALE_BASE_VALUE
-/** 粒子最慢速度大小比例值 */
-private const val DEFAULT_PARTICLE_SLOWEST_SPEED_SCALE_VALUE = 1.5F * SCALE_BASE_VALUE
+/** 自动调节粒子数量时 默认最小粒子数量 */
+private const val DEFAULT_MIN_PARTICLE_NUMBER = 200
+/** 自动调节粒子数量时 默认最大粒子数量 */
+private const val DEFAULT_MAX_PARTICLE_NUMBER = 6000
+/** 自动调节粒子数量时 默认每帧 (模拟 + 绘制) 目标耗时 (毫秒) */
+private const val DEFAULT_TARGET_FRAME_TIME_MS = 4F
+/** 默认粒子密度 (每平方dp的粒子数量, 尺寸 360dp 且内圆半径为默认值时约为 2000 个粒子) */
+private const val DEFAULT_PARTICLE_DENSITY = 0.026F
+/** 保存状态时最多保存的粒子数量 (每个粒子量化后 16 字节, 约 5KB, 防止超出 Binder 事务大小限制, 其余粒子恢复时重新生成稳定状态) */
+private const val MAX_SAVED_PARTICLE_NUMBER = 300
+/** 保存状态 Key: 父类状态 */
+private const val KEY_SUPER_STATE = "super_state"
+/** 保存状态 Key: 粒子状态 */
+private const val KEY_PARTICLE_STATE = "particle_state"
 
-/** 粒子数量 */
-private const val PARTICLE_NUMBER = 2000
+/** 限制帧率时允许提前的比例 (垂直同步时间略早于目标间隔时也执行, 避免因为抖动多跳过一帧) */
+private const val FRAME_INTERVAL_TOLERANCE = 0.1F
 
-/** 动画持续时间(毫秒值) 默认: 2000毫秒 */
-private const val ANIMATOR_DURATION_MS = 2000L
+/** 默认屏幕刷新率 (获取不到 Display 时使用) */
+private const val DEFAULT_REFRESH_RATE = 60F
+/** 秒转纳秒 */
+private const val NANOS_PER_SECOND = 1_000_000_000L
+/** 毫秒转纳秒 */
+private const val NANOS_PER_MILLISECOND = 1_000_000L
 
 /**
  * Function: 粒子扩散效果 View (仿网易云空灵轻音特效)
@@ -46,206 +78,619 @@ class ParticleDiffuseView @JvmOverloads constructor(
     defStyleRes: Int = 0
 ) : View(context, attrs, defStyleAttr, defStyleRes) {
 
-    /** 画笔 */
-    private val mPaint = Paint().apply {
-        // 画笔颜色(白色)
-        color = Color.WHITE
-        // 抗锯齿(true)
-        isAntiAlias = true
-    }
-    /** 路径(用来画中心圆的路径) */
-    private val mPath = Path()
-    /** 用于测量粒子所在路径的位置 */
-    private val mPathMeasure = PathMeasure()
-
-    /** Random */
-    private val mRandom = Random()
+    /** 粒子引擎 (粒子状态和模拟) */
+    private val mEngine = ParticleEngine(PARTICLE_NUMBER)
+    /** 粒子绘制器 */
+    private val mRenderer = ParticleRenderer(PARTICLE_NUMBER)
 
     /** 粒子颜色 */
     @ColorInt
     private var mParticleColor = DEFAULT_PARTICLE_COLOR
-    /** 粒子半径 */
-    private var mParticleRadius = 0F
-    /** 粒子最慢速度 */
-    private var mParticleSlowestSpeed = 0F
     /** 粒子多颜色列表 */
-//    private var mParticleMultiColorList: List<ParticleMultiColor>? = null
-    /** 粒子列表 */
-    private val mParticleList = mutableListOf<Particle>()
-    /** 粒子更新的次数 */
-    private var mParticleUpdatedCount = 0
-    /** 粒子要绘制的话需要更新的最小次数 (延迟刷新, 用于解决动画开始时的粒子向外扩散不美观的问题) */
-    private var mParticleStartUpdateCount = 0
-    /** 粒子动画 */
-    private val mAnimator = ValueAnimator.ofFloat(0F, 1F)
+    private var mParticleMultiColorList: List<ParticleMultiColor>? = null
+
+    /** 帧回调 (注册到进程内共享的 [ParticleFrameTicker], 由 Choreographer 垂直同步信号驱动) */
+    private val mTickerClient = object : ParticleFrameTicker.Client {
+        override fun onTick(frameTimeNanos: Long) = onFrame(frameTimeNanos)
+    }
+    /** 是否启用动画 (为 false 时即使可见也暂停) */
+    private var mAnimationEnabled = true
+    /** 是否正在运行模拟 */
+    private var mRunning = false
+    /** 粒子引擎是否已经初始化 (已经布局过) */
+    private var mEngineReady = false
+
+    /** View 及其所有父 View 是否可见 */
+    private var mVisibleAggregated = true
+    /** 所在窗口是否可见 */
+    private var mWindowVisible = true
+    /** 所在窗口是否有焦点 */
+    private var mWindowFocused = true
+    /** 窗口失去焦点时是否暂停 (例如被对话框覆盖) */
+    private var mPauseOnWindowFocusLost = false
+    /** 是否和屏幕可见区域相交 */
+    private var mOnScreen = true
+    /** 屏幕可见区域 (复用, 避免重复创建) */
+    private val mVisibleRect = Rect()
+    /** 滚动或布局变化时检查是否还在屏幕内 */
+    private val mScreenListener = object : ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnGlobalLayoutListener {
+        override fun onScrollChanged() = checkOnScreen()
+        override fun onGlobalLayout() = checkOnScreen()
+    }
+
+    /** 是否在后台线程模拟 */
+    private var mAsyncSimulation = false
+    /** 后台模拟线程 */
+    private var mSimulationThread: HandlerThread? = null
+    /** 后台模拟线程 Handler */
+    private var mSimulationHandler: Handler? = null
+    /** 后台模拟任务是否已提交但还未执行 (防止任务堆积) */
+    private val mSimulationPending = AtomicBoolean(false)
+    /** 后台模拟任务需要推进到的帧时间戳 (纳秒) */
+    @Volatile
+    private var mPendingFrameTimeNanos = 0L
+    /** 后台模拟任务 */
+    private val mSimulationTask = Runnable {
+        mSimulationPending.set(false)
+        advanceSimulation(mPendingFrameTimeNanos)
+        invalidateParticleBounds(true)
+    }
+
+    /** 粒子包围盒 (模拟线程写入) */
+    private val mParticleBounds = FloatArray(4)
+    /** 本帧粒子所在区域 (模拟线程访问) */
+    private val mDirtyRect = Rect()
+    /** 上一帧粒子所在区域 (模拟线程访问, 重绘时需要擦除) */
+    private val mLastDirtyRect = Rect()
+    /** 需要重绘的区域 (模拟线程访问) */
+    private val mInvalidateRect = Rect()
+
+    /** 是否根据每帧耗时自动调节粒子数量 */
+    private var mAdaptiveParticleCount = false
+    /** 粒子数量调节器 */
+    private val mGovernor = ParticleCountGovernor()
+    /** 粒子密度 (每平方dp的粒子数量, 0 表示固定粒子数量) */
+    private var mParticleDensity = DEFAULT_PARTICLE_DENSITY
+    /** 按密度计算粒子数量时的上限 */
+    private var mDensityMaxCount = PARTICLE_NUMBER
+    /** 按当前尺寸和密度计算出的粒子数量 (自动调节粒子数量时作为初始数量, 没有设置最大粒子数量时同时作为最大粒子数量) */
+    private var mDensityParticleCount = PARTICLE_NUMBER
+    /** 是否设置了自动调节粒子数量时的最大粒子数量 (设置后不再受密度限制) */
+    private var mCustomMaxParticleCount = false
+    /** 每帧 (模拟 + 绘制) 目标耗时 (纳秒, 和共享预算分摊后的较小值作为调节器的目标耗时) */
+    private var mTargetFrameTimeNanos = 0L
+    /** 最近一次模拟耗时 (纳秒, 异步模式下由后台模拟线程写入) */
+    @Volatile
+    private var mUpdateTimeNanos = 0L
+
+    /** 音频帧缓冲 (为 null 时不响应音频, 由UI线程设置, 模拟线程读取) */
+    @Volatile
+    private var mAudioBuffer: ParticleAudioBuffer? = null
+    /** 音频响应器 (只在模拟线程中访问) */
+    private val mAudioReactor = ParticleAudioReactor()
 
     /** 扩散圆(内圆) 半径 */
     private var mInnerCircleRadius = 0F
-    /** 扩散圆(内圆) 上某一点的坐标 (0下标: X坐标, 1下标: Y坐标) */
-    private val mInnerCirclePos = FloatArray(2)
-    /** 扩散圆(内圆) 上某一点切线坐标 (0下标: 和X轴相交的X轴坐标, 1坐标: 和Y轴相交的Y轴坐标) */
-    private val mInnerCircleTan = FloatArray(2)
+    /** 是否自定义扩散圆(内圆) 半径  true:自定义  false:默认 (尺寸的四分之一) */
+    private var mCustomInnerCircleRadius = false
+    /** 下一次布局时是否需要重新初始化所有粒子 */
+    private var mReinitRequested = false
+    /** 目标帧率 (0 表示跟随屏幕刷新率) */
+    private var mTargetFps = 0
+    /** 上一次执行模拟的垂直同步时间戳 (纳秒, 0 表示刚开始运行) */
+    private var mLastSimulatedFrameTimeNanos = 0L
+
+    /** 性能指标监听器 (为 null 时不统计) */
+    private var mFrameMetricsListener: OnFrameMetricsListener? = null
+    /** 性能指标 (每帧复用) */
+    private val mFrameMetrics = ParticleFrameMetrics()
+    /** 上一次回调时快照中累计重生的粒子数量 (-1 表示还没有回调过) */
+    private var mLastTotalRespawnCount = -1L
+    /** 模拟耗时滑动窗口百分位数 */
+    private val mUpdateTimePercentile = ParticleRollingPercentile()
+    /** 绘制耗时滑动窗口百分位数 */
+    private val mDrawTimePercentile = ParticleRollingPercentile()
+    /** 上一次帧回调的垂直同步时间戳 (纳秒, 0 表示刚开始运行) */
+    private var mLastTickTimeNanos = 0L
+    /** 尚未回调给监听器的错过的垂直同步次数 */
+    private var mPendingLateTickCount = 0
+    /** 开始运行以来累计错过的垂直同步次数 */
+    private var mTotalLateTickCount = 0L
 
-    /** 尺寸大小 (宽和高取最小作为尺寸大小) */
-    private var mSize = 0F
-    /** 外圆半径 减去 扩展圆(内圆)半径 */
-    private var mRingThickness = 0F
+    /** 是否在 onSaveInstanceState 中保存粒子状态 (屏幕旋转等配置变化重建后继续之前的效果, 默认关闭) */
+    private var mSaveParticleState = false
+    /** 待恢复的粒子状态 (恢复实例状态后, 下一次初始化粒子时使用) */
+    private var mPendingParticleState: ShortArray? = null
+
+    /** 自定义发射路径 (为 null 时从扩散圆(内圆)发射) */
+    private var mEmitterPath: Path? = null
+    /** 随机种子 (每次重新初始化所有粒子前设置, null 表示不固定种子) */
+    private var mRandomSeed: Long? = null
 
     init {
         context.obtainStyledAttributes(attrs, R.styleable.ParticleDiffuseView).apply {
             mInnerCircleRadius = getDimension(R.styleable.ParticleDiffuseView_radius, 0F)
+            mCustomInnerCircleRadius = mInnerCircleRadius.toInt() != 0
             mParticleColor = getColor(R.styleable.ParticleDiffuseView_color, DEFAULT_PARTICLE_COLOR)
+            mRenderer.renderMode = getInt(R.styleable.ParticleDiffuseView_particleRenderMode, RENDER_MODE_CIRCLE)
+            mRenderer.alphaBucketCount = getInt(R.styleable.ParticleDiffuseView_particleAlphaBucketCount, DEFAULT_ALPHA_BUCKET_COUNT)
+            mAsyncSimulation = getBoolean(R.styleable.ParticleDiffuseView_particleAsyncSimulation, false)
+            mEngine.parallelThreshold = getInt(R.styleable.ParticleDiffuseView_particleParallelThreshold, DEFAULT_PARALLEL_THRESHOLD)
+            mRenderer.trailFade = getFloat(R.styleable.ParticleDiffuseView_particleTrailFade, 0F)
+            mTargetFps = getInt(R.styleable.ParticleDiffuseView_particleTargetFps, 0).coerceAtLeast(0)
+            mAdaptiveParticleCount = getBoolean(R.styleable.ParticleDiffuseView_particleAdaptiveCount, false)
+            mGovernor.minCount = getInt(R.styleable.ParticleDiffuseView_particleMinCount, DEFAULT_MIN_PARTICLE_NUMBER)
+            mGovernor.maxCount = getInt(R.styleable.ParticleDiffuseView_particleMaxCount, DEFAULT_MAX_PARTICLE_NUMBER)
+            mCustomMaxParticleCount = hasValue(R.styleable.ParticleDiffuseView_particleMaxCount)
+            mTargetFrameTimeNanos = (getFloat(R.styleable.ParticleDiffuseView_particleTargetFrameTime, DEFAULT_TARGET_FRAME_TIME_MS) * NANOS_PER_MILLISECOND).toLong()
+            mParticleDensity = getFloat(R.styleable.ParticleDiffuseView_particleDensity, DEFAULT_PARTICLE_DENSITY).coerceAtLeast(0F)
+            mDensityMaxCount = getInt(R.styleable.ParticleDiffuseView_particleDensityMaxCount, PARTICLE_NUMBER).coerceAtLeast(0)
+            mSaveParticleState = getBoolean(R.styleable.ParticleDiffuseView_particleSaveState, false)
             //一定要回收，否则会内存泄漏
             recycle()
         }
-        initAnimator()
+        applyColors()
+        updateGovernorMaxCount()
+        if (mGovernor.maxCount < mGovernor.minCount) {
+            mGovernor.maxCount = mGovernor.minCount
+        }
+        if (mAdaptiveParticleCount) {
+            mEngine.ensureCapacity(mGovernor.maxCount)
+        }
     }
 
     /**
-     * 初始化动画
+     * 根据可见性更新模拟状态: 不可见时暂停 (保留粒子状态), 重新可见时继续
      */
-    private fun initAnimator() {
-        mAnimator.run {
-            duration = ANIMATOR_DURATION_MS
-            repeatCount = INFINITE
-            interpolator = LinearInterpolator()
-            addUpdateListener {
-                // 注意: 粒子速度和动画duration没有关系, 和 Particle.speed 大小有关系
-                updateParticle()
-                invalidate()
-                ++mParticleUpdatedCount
+    private fun updateSimulationState() {
+        val shouldRun = mEngineReady
+                && mAnimationEnabled
+                && isAttachedToWindow
+                && mVisibleAggregated
+                && mWindowVisible
+                && (mWindowFocused || !mPauseOnWindowFocusLost)
+                && mOnScreen
+
+        if (shouldRun) {
+            if (mAsyncSimulation) {
+                startSimulationThread()
             }
+            startSimulation()
+        } else {
+            stopSimulation()
         }
     }
 
     /**
-     * 初始化粒子
+     * 检查是否和屏幕可见区域相交
      */
-    private fun initParticle() {
-        mPaint.color = mParticleColor
-        // CW: 顺时针  CCW: 逆时针
-        mPath.reset()
-        mPath.addCircle(mSize / 2F, mSize / 2F, mInnerCircleRadius, Path.Direction.CCW)
-        mPathMeasure.setPath(mPath, false)
-        mParticleList.clear()
-        for (i in 0..PARTICLE_NUMBER) {
-            // 计算路径
-            mPathMeasure.getPosTan(i / PARTICLE_NUMBER.toFloat() * mPathMeasure.length, mInnerCirclePos, mInnerCircleTan)
-
-            val center = mSize / 2F
-            val x = mInnerCirclePos[0]
-            val y = mInnerCirclePos[1]
-            // 速度 (以动画每次刷新作为单位时间)
-            val speed = getRandomSpeed()
-            // 弧度值  弧度方向: 以X轴(正轴)为起点, 顺时针为角度增加方向
-            val angle = coordinateToRadian(
-                x = x - center,
-                y = y - center
-            )
-            // 当前移动距离
-            val offset = 0F
-            // 最大移动距离
-            val maxOffset = mRandom.nextInt(mRingThickness.toInt())
-
-            mParticleList.add(Particle(
-                // 在扩展圆(内圆) 边界线 X轴方向 左右浮动
-                x = x + getCoordinateRandomOffset(),
-                // 在扩展圆(内圆) 边界线 Y轴方向 上下浮动
-                y = y + getCoordinateRandomOffset(),
-                speed = speed,
-                angle = angle,
-                offset = offset,
-                maxOffset = maxOffset.toFloat()
-            ))
-        }
-        mParticleUpdatedCount = 0
-        mParticleStartUpdateCount = (mRingThickness / mParticleSlowestSpeed).toInt()
-        mAnimator.cancel()
-        mAnimator.start()
-    }
-
-    /**
-     * 更新粒子 (以动画刷新一次作为单位时间)
-     */
-    private fun updateParticle() {
-        mParticleList.forEach { particle ->
-            if (particle.offset >= particle.maxOffset) {
-                // 当前粒子重置
-                // 当前移动距离
-                particle.offset = 0F
-                // 速度 (以动画每次刷新作为单位时间)
-                particle.speed = getRandomSpeed()
-                // 最大移动距离
-                particle.maxOffset = mRandom.nextInt(mRingThickness.toInt()).toFloat()
-                // 计算路径
-                mPathMeasure.getPosTan(mRandom.nextInt(mPathMeasure.length.toInt() + 1).toFloat(), mInnerCirclePos, mInnerCircleTan)
-                // X轴初始位置
-                particle.x = mInnerCirclePos[0] + getCoordinateRandomOffset()
-                // Y轴初始位置
-                particle.y = mInnerCirclePos[1] + getCoordinateRandomOffset()
-            } else {
-                // 当前移动距离
-                particle.offset += particle.speed
-                // X轴初始位置
-                particle.x = mSize / 2 + (mInnerCircleRadius + particle.offset) * cos(particle.angle).toFloat()
-                // Y轴初始位置
-                particle.y = mSize / 2 + (mInnerCircleRadius + particle.offset) * sin(particle.angle).toFloat()
+    private fun checkOnScreen() {
+        val onScreen = isAttachedToWindow && getGlobalVisibleRect(mVisibleRect)
+
+        if (mOnScreen != onScreen) {
+            mOnScreen = onScreen
+            updateSimulationState()
+        }
+    }
+
+    /**
+     * 开始模拟 (暂停后恢复时重置帧时钟, 暂停时间不计入模拟)
+     */
+    private fun startSimulation() {
+        if (mRunning) {
+            return
+        }
+        mRunning = true
+        mEngine.resetClock()
+        mLastTickTimeNanos = 0L
+        mLastSimulatedFrameTimeNanos = 0L
+        ParticleFrameTicker.register(mTickerClient)
+    }
+
+    /**
+     * 停止模拟
+     */
+    private fun stopSimulation() {
+        mRunning = false
+        ParticleFrameTicker.unregister(mTickerClient)
+    }
+
+    /**
+     * 帧回调: 同步模式下直接在UI线程模拟, 异步模式下交给后台模拟线程
+     *
+     * @param frameTimeNanos 当前帧的垂直同步时间戳 (纳秒)
+     */
+    private fun onFrame(frameTimeNanos: Long) {
+        if (!mRunning) {
+            return
+        }
+        // 限制帧率: 跳过中间的垂直同步 (不模拟也不刷新), 模拟按实际经过的时间推进, 速度不变
+        if (mTargetFps > 0) {
+            val intervalNanos = NANOS_PER_SECOND / mTargetFps
+
+            if (mLastSimulatedFrameTimeNanos != 0L
+                && frameTimeNanos - mLastSimulatedFrameTimeNanos < intervalNanos * (1F - FRAME_INTERVAL_TOLERANCE)) {
+                return
             }
+            mLastSimulatedFrameTimeNanos = frameTimeNanos
+        }
+        if (mFrameMetricsListener != null) {
+            countLateTicks(frameTimeNanos)
+        }
+
+        val simulationHandler = mSimulationHandler
+
+        if (mAsyncSimulation && simulationHandler != null) {
+            mPendingFrameTimeNanos = frameTimeNanos
+            // 上一个任务还未执行时不重复提交, 任务执行时会读取最新的帧时间戳
+            if (mSimulationPending.compareAndSet(false, true)) {
+                simulationHandler.post(mSimulationTask)
+            }
+        } else {
+            advanceSimulation(frameTimeNanos)
+            invalidateParticleBounds(false)
         }
     }
 
     /**
-     * 绘制粒子
+     * 只刷新 本帧和上一帧 粒子所在区域 (粒子只分布在扩散环内, View 较大时可以少重绘很多像素)
+     *
+     * @param async 是否在后台模拟线程调用
      */
-    private fun drawParticle(canvas: Canvas?) {
-        // 延迟刷新, 用于解决动画开始时的粒子向外扩散不美观的问题
-        if (mParticleUpdatedCount >= mParticleStartUpdateCount) {
-            mParticleList.forEach { particle ->
-                val alphaFloat = 1F - particle.offset / particle.maxOffset
-                val alpha = (alphaFloat * 255F).toInt()
+    @Suppress("DEPRECATION")
+    private fun invalidateParticleBounds(async: Boolean) {
+        val bounds = mParticleBounds
+        val dirtyRect = mDirtyRect
+        val invalidateRect = mInvalidateRect
 
-                // 加界限判断, 防止闪烁
-                mPaint.alpha = when {
-                    alpha < 0 -> 0
-                    alpha > 255 -> 255
-                    else -> alpha
-                }
-                canvas?.drawCircle(particle.x, particle.y, mParticleRadius, mPaint)
+        // 拖尾会残留在之前所有帧的粒子位置上, 只能整体刷新
+        if (mRenderer.trailFade > 0F) {
+            mLastDirtyRect.setEmpty()
+            if (async) {
+                postInvalidateOnAnimation()
+            } else {
+                invalidate()
             }
+            return
+        }
+        if (mEngine.copyBounds(bounds)) {
+            dirtyRect.set(floor(bounds[0]).toInt(), floor(bounds[1]).toInt(), ceil(bounds[2]).toInt() + 1, ceil(bounds[3]).toInt() + 1)
+        } else {
+            dirtyRect.setEmpty()
+        }
+        // 上一帧粒子所在区域也需要重绘, 否则会残留
+        invalidateRect.set(dirtyRect)
+        invalidateRect.union(mLastDirtyRect)
+        mLastDirtyRect.set(dirtyRect)
+        if (invalidateRect.isEmpty) {
+            return
+        }
+        if (async) {
+            postInvalidateOnAnimation(invalidateRect.left, invalidateRect.top, invalidateRect.right, invalidateRect.bottom)
+        } else {
+            invalidate(invalidateRect)
         }
     }
 
     /**
-     * 获取坐标随机偏移量
+     * 推进模拟并记录耗时
+     *
+     * @param frameTimeNanos 帧时间戳 (纳秒)
      */
-    private fun getCoordinateRandomOffset() = mRandom.nextInt((19.2F * SCALE_BASE_VALUE * mSize).toInt()) - 9.6F * SCALE_BASE_VALUE * mSize
+    private fun advanceSimulation(frameTimeNanos: Long) {
+        val startTimeNanos = System.nanoTime()
+        val audioBuffer = mAudioBuffer
+
+        // 每次步进前读取最新音频帧
+        if (audioBuffer != null) {
+            mAudioReactor.update(audioBuffer, mEngine, frameTimeNanos)
+        } else {
+            mAudioReactor.detach(mEngine)
+        }
+        mEngine.advance(frameTimeNanos)
+        mUpdateTimeNanos = System.nanoTime() - startTimeNanos
+    }
 
     /**
-     * 获取随机速度量
+     * 根据本帧 (模拟 + 绘制) 耗时调节粒子数量 (UI线程调用)
+     *
+     * @param drawTimeNanos 本帧绘制耗时 (纳秒)
      */
-    private fun getRandomSpeed(): Float {
-        return mRandom.nextInt(mParticleSlowestSpeed.toInt()) + mParticleSlowestSpeed
+    private fun adjustParticleCount(drawTimeNanos: Long) {
+        val currentCount = mEngine.activeCount
+        val frameBudgetNanos = ParticleFrameTicker.frameBudgetNanos
+        val clientCount = ParticleFrameTicker.clientCount
+
+        // 设置了共享预算时, 每个 View 分到 预算 / 正在运行的 View 数量
+        mGovernor.targetFrameTimeNanos = if (frameBudgetNanos > 0L && clientCount > 0) {
+            minOf(mTargetFrameTimeNanos, frameBudgetNanos / clientCount)
+        } else {
+            mTargetFrameTimeNanos
+        }
+
+        val count = mGovernor.record(mUpdateTimeNanos + drawTimeNanos, currentCount)
+
+        if (count != currentCount) {
+            mEngine.setActiveCount(count)
+        }
+    }
+
+    /**
+     * 启动后台模拟线程
+     */
+    private fun startSimulationThread() {
+        if (mSimulationThread != null) {
+            return
+        }
+
+        val thread = HandlerThread("ParticleDiffuseView-Simulation").apply { start() }
+
+        mSimulationThread = thread
+        mSimulationHandler = Handler(thread.looper)
+    }
+
+    /**
+     * 停止后台模拟线程
+     */
+    private fun stopSimulationThread() {
+        mSimulationHandler?.removeCallbacks(mSimulationTask)
+        mSimulationPending.set(false)
+        mSimulationThread?.quitSafely()
+        mSimulationThread = null
+        mSimulationHandler = null
+    }
+
+    /**
+     * 把颜色 (单一颜色 或 多颜色列表) 应用到粒子引擎
+     */
+    private fun applyColors() {
+        val colorList = mParticleMultiColorList
+
+        if (colorList.isNullOrEmpty()) {
+            mEngine.setColors(intArrayOf(mParticleColor))
+        } else {
+            mEngine.setColors(
+                IntArray(colorList.size) { i -> colorList[i].color },
+                IntArray(colorList.size) { i -> colorList[i].weight }
+            )
+        }
+    }
+
+    /**
+     * 按发射环面积和粒子密度计算粒子数量
+     *
+     * @param size 尺寸大小
+     * @return 粒子数量 (关闭密度时返回默认粒子数量)
+     */
+    private fun computeDensityParticleCount(size: Float): Int {
+        if (mParticleDensity <= 0F) {
+            return PARTICLE_NUMBER
+        }
+
+        val displayDensity = resources.displayMetrics.density
+
+        // 密度按 dp 设置, 换算为每平方像素的粒子数量, 同样大小的 View 在不同屏幕上粒子数量一致
+        return getParticleCountForRing(size, mInnerCircleRadius, mParticleDensity / (displayDensity * displayDensity), mDensityMaxCount)
+    }
+
+    /**
+     * 没有设置最大粒子数量时, 按密度计算出的粒子数量作为调节器的最大粒子数量 (关闭密度时为默认最大粒子数量)
+     */
+    private fun updateGovernorMaxCount() {
+        if (mCustomMaxParticleCount) {
+            return
+        }
+
+        val maxCount = if (mParticleDensity > 0F) mDensityParticleCount else DEFAULT_MAX_PARTICLE_NUMBER
+
+        mGovernor.maxCount = maxCount.coerceAtLeast(mGovernor.minCount)
+    }
+
+    /**
+     * 把按密度计算出的粒子数量应用到粒子引擎
+     * 自动调节粒子数量时只作为初始数量 (之后由调节器在 [最小粒子数量, 最大粒子数量] 内调节), 否则直接作为活跃粒子数量
+     *
+     * @param initial 是否重新开始调节 (true: 从按密度计算出的粒子数量开始  false: 保留调节器当前的粒子数量)
+     */
+    private fun applyParticleCount(initial: Boolean) {
+        updateGovernorMaxCount()
+
+        val count = if (mAdaptiveParticleCount) {
+            (if (initial) mDensityParticleCount else mEngine.activeCount).coerceIn(mGovernor.minCount, mGovernor.maxCount)
+        } else {
+            mDensityParticleCount
+        }
+
+        mEngine.ensureCapacity(if (mAdaptiveParticleCount) mGovernor.maxCount else count)
+        if (count != mEngine.activeCount) {
+            mEngine.setActiveCount(count)
+        }
+    }
+
+    /**
+     * 粒子密度或上限变化时按当前尺寸重新计算粒子数量
+     */
+    private fun updateDensityParticleCount() {
+        if (!mEngineReady) {
+            return
+        }
+        mDensityParticleCount = computeDensityParticleCount(mEngine.size)
+        mGovernor.reset()
+        applyParticleCount(true)
+    }
+
+    /**
+     * 初始化粒子
+     */
+    private fun initParticle(size: Float) {
+        stopSimulation()
+        mRandomSeed?.let { mEngine.setSeed(it) }
+
+        val particleState = mPendingParticleState
+
+        mPendingParticleState = null
+        // 有保存的粒子状态时按新尺寸缩放恢复, 否则重新生成
+        if (particleState == null || !mEngine.restoreState(particleState, size, mInnerCircleRadius)) {
+            mEngine.setup(size, mInnerCircleRadius)
+        }
+        mEngineReady = true
+        updateSimulationState()
     }
 
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
         super.onLayout(changed, left, top, right, bottom)
         val width = right - left
         val height = bottom - top
+        val size = if (width > height) height.toFloat() else width.toFloat()
 
-        mSize = if (width > height) height.toFloat() else width.toFloat()
-        // 默认扩展圆(内圆)半径为宽的一半
-        if (mInnerCircleRadius.toInt() == 0) {
-            mInnerCircleRadius = mSize / 4F
+        // 默认扩展圆(内圆)半径为尺寸的四分之一
+        if (!mCustomInnerCircleRadius) {
+            mInnerCircleRadius = size / 4F
+        }
+        // 粒子数量和发射环面积成正比, 小尺寸时粒子更少
+        mDensityParticleCount = computeDensityParticleCount(size)
+        if (!mEngineReady || mReinitRequested) {
+            mReinitRequested = false
+            // 先确定粒子数量, 初始化时直接生成对应数量的粒子
+            applyParticleCount(true)
+            initParticle(size)
+        } else {
+            // 尺寸和半径都没有变化时不做任何事, 变化时按比例缩放已有粒子
+            mEngine.resize(size, mInnerCircleRadius)
+            // 按新尺寸增减粒子 (新增的粒子按新尺寸生成)
+            applyParticleCount(false)
         }
-        mRingThickness = mSize / 2 - mInnerCircleRadius
-        mParticleRadius = DEFAULT_PARTICLE_RADIUS_SCALE_VALUE * mSize
-        mParticleSlowestSpeed = DEFAULT_PARTICLE_SLOWEST_SPEED_SCALE_VALUE * mSize
-        initParticle()
     }
 
     override fun onDraw(canvas: Canvas?) {
         super.onDraw(canvas)
-        drawParticle(canvas)
+        if (canvas == null) {
+            return
+        }
+
+        val startTimeNanos = System.nanoTime()
+        val snapshot = mEngine.acquireSnapshot()
+
+        mRenderer.draw(canvas, snapshot)
+
+        val drawTimeNanos = System.nanoTime() - startTimeNanos
+
+        if (mAdaptiveParticleCount && mRunning) {
+            adjustParticleCount(drawTimeNanos)
+        }
+        if (mRunning) {
+            mFrameMetricsListener?.let { reportFrameMetrics(it, snapshot, drawTimeNanos) }
+        }
+    }
+
+    /**
+     * 统计两次帧回调之间错过的垂直同步次数 (UI线程调用)
+     *
+     * @param frameTimeNanos 当前帧的垂直同步时间戳 (纳秒)
+     */
+    private fun countLateTicks(frameTimeNanos: Long) {
+        val lastTickTimeNanos = mLastTickTimeNanos
+
+        mLastTickTimeNanos = frameTimeNanos
+        if (lastTickTimeNanos == 0L) {
+            return
+        }
+
+        val refreshRate = display?.refreshRate?.takeIf { it > 0F } ?: DEFAULT_REFRESH_RATE
+        var periodNanos = (NANOS_PER_SECOND / refreshRate).toLong()
+
+        // 限制帧率时, 期望间隔为不小于目标间隔的最小刷新周期整数倍 (主动跳过的垂直同步不计入)
+        if (mTargetFps > 0) {
+            val intervalNanos = NANOS_PER_SECOND / mTargetFps * (1F - FRAME_INTERVAL_TOLERANCE)
+
+            periodNanos *= ceil(intervalNanos / periodNanos).toLong().coerceAtLeast(1L)
+        }
+        // 间隔四舍五入为刷新周期的整数倍, 超出 1 的部分即为错过的次数
+        val missed = ((frameTimeNanos - lastTickTimeNanos + periodNanos / 2) / periodNanos - 1).toInt()
+
+        if (missed > 0) {
+            mPendingLateTickCount += missed
+            mTotalLateTickCount += missed
+        }
+    }
+
+    /**
+     * 填写本帧性能指标并回调监听器 (UI线程调用, 不分配内存)
+     * 粒子数量相关指标只从本帧绘制的快照读取, 不获取模拟锁 (异步模拟时不会等待后台线程完成模拟)
+     *
+     * @param listener 监听器
+     * @param snapshot 本帧绘制的快照
+     * @param drawTimeNanos 本帧绘制耗时 (纳秒)
+     */
+    private fun reportFrameMetrics(listener: OnFrameMetricsListener, snapshot: ParticleSnapshot, drawTimeNanos: Long) {
+        val metrics = mFrameMetrics
+        val updateTimeNanos = mUpdateTimeNanos
+        val totalRespawnCount = snapshot.totalRespawnCount
+
+        metrics.activeParticleCount = snapshot.count
+        metrics.liveParticleCount = snapshot.liveCount
+        // 第一次回调 (或引擎重新创建后累计值变小) 时没有参照, 记为 0
+        metrics.respawnCount = if (mLastTotalRespawnCount in 0L..totalRespawnCount) {
+            (totalRespawnCount - mLastTotalRespawnCount).toInt()
+        } else {
+            0
+        }
+        mLastTotalRespawnCount = totalRespawnCount
+        mUpdateTimePercentile.record(updateTimeNanos)
+        mDrawTimePercentile.record(drawTimeNanos)
+        metrics.frameTimeNanos = mLastTickTimeNanos
+        metrics.updateTimeNanos = updateTimeNanos
+        metrics.drawTimeNanos = drawTimeNanos
+        metrics.lateTickCount = mPendingLateTickCount
+        metrics.totalLateTickCount = mTotalLateTickCount
+        metrics.updateTimeP50Nanos = mUpdateTimePercentile.percentile(0.5F)
+        metrics.updateTimeP90Nanos = mUpdateTimePercentile.percentile(0.9F)
+        metrics.updateTimeP99Nanos = mUpdateTimePercentile.percentile(0.99F)
+        metrics.drawTimeP50Nanos = mDrawTimePercentile.percentile(0.5F)
+        metrics.drawTimeP90Nanos = mDrawTimePercentile.percentile(0.9F)
+        metrics.drawTimeP99Nanos = mDrawTimePercentile.percentile(0.99F)
+        mPendingLateTickCount = 0
+        listener.onFrameMetrics(metrics)
+    }
+
+    override fun onSaveInstanceState(): Parcelable? {
+        val superState = super.onSaveInstanceState()
+
+        if (!mSaveParticleState || !mEngineReady) {
+            return superState
+        }
+
+        val particleState = mEngine.saveState(MAX_SAVED_PARTICLE_NUMBER) ?: return superState
+
+        return Bundle().apply {
+            putParcelable(KEY_SUPER_STATE, superState)
+            putShortArray(KEY_PARTICLE_STATE, particleState)
+        }
+    }
+
+    override fun onRestoreInstanceState(state: Parcelable?) {
+        if (state is Bundle && state.containsKey(KEY_PARTICLE_STATE)) {
+            mPendingParticleState = state.getShortArray(KEY_PARTICLE_STATE)
+            // 已经初始化过时在下一次布局中重新初始化
+            if (mEngineReady) {
+                mReinitRequested = true
+                requestLayout()
+            }
+            super.onRestoreInstanceState(state.getParcelable(KEY_SUPER_STATE))
+            return
+        }
+        super.onRestoreInstanceState(state)
+    }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        viewTreeObserver.addOnScrollChangedListener(mScreenListener)
+        viewTreeObserver.addOnGlobalLayoutListener(mScreenListener)
+        // 附加到已经隐藏或失去焦点的窗口时不会收到变化回调, 先按当前状态初始化, 再决定是否开始模拟
+        mVisibleAggregated = isShown
+        mWindowVisible = windowVisibility == VISIBLE
+        mWindowFocused = hasWindowFocus()
+        updateSimulationState()
     }
 
     /**
@@ -253,14 +698,46 @@ class ParticleDiffuseView @JvmOverloads constructor(
      */
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
-        // 销毁动画
-        mAnimator.run {
-            removeAllUpdateListeners()
-            removeAllListeners()
-            cancel()
+        viewTreeObserver.removeOnScrollChangedListener(mScreenListener)
+        viewTreeObserver.removeOnGlobalLayoutListener(mScreenListener)
+        // 停止模拟
+        stopSimulation()
+        stopSimulationThread()
+        mRenderer.release()
+    }
+
+    /**
+     * View 及其所有父 View 的可见性变化 (API 24 及以上)
+     */
+    override fun onVisibilityAggregated(isVisible: Boolean) {
+        super.onVisibilityAggregated(isVisible)
+        mVisibleAggregated = isVisible
+        updateSimulationState()
+    }
+
+    /**
+     * View 或其父 View 的可见性变化 (API 24 以下没有 onVisibilityAggregated, 使用 isShown 判断)
+     */
+    override fun onVisibilityChanged(changedView: View, visibility: Int) {
+        super.onVisibilityChanged(changedView, visibility)
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            mVisibleAggregated = isShown
+            updateSimulationState()
         }
     }
 
+    override fun onWindowVisibilityChanged(visibility: Int) {
+        super.onWindowVisibilityChanged(visibility)
+        mWindowVisible = visibility == VISIBLE
+        updateSimulationState()
+    }
+
+    override fun onWindowFocusChanged(hasWindowFocus: Boolean) {
+        super.onWindowFocusChanged(hasWindowFocus)
+        mWindowFocused = hasWindowFocus
+        updateSimulationState()
+    }
+
     /**
      * 扩展圆(内圆) 半径
      */
@@ -268,6 +745,7 @@ class ParticleDiffuseView @JvmOverloads constructor(
         get() = this.mInnerCircleRadius
         set(radius) {
             this.mInnerCircleRadius = radius
+            this.mCustomInnerCircleRadius = radius.toInt() != 0
         }
 
     /**
@@ -277,48 +755,351 @@ class ParticleDiffuseView @JvmOverloads constructor(
         @ColorInt get() = this.mParticleColor
         set(@ColorInt color) {
             this.mParticleColor = color
+            applyColors()
+        }
+
+    /**
+     * 粒子绘制方式
+     */
+    var renderMode: Int
+        @ParticleRenderMode get() = mRenderer.renderMode
+        set(@ParticleRenderMode renderMode) {
+            mRenderer.renderMode = renderMode
+            invalidate()
+        }
+
+    /**
+     * 透明度分组数量 (用于 [RENDER_MODE_POINTS] 绘制方式, 范围 [1, 256])
+     */
+    var alphaBucketCount: Int
+        get() = mRenderer.alphaBucketCount
+        set(alphaBucketCount) {
+            mRenderer.alphaBucketCount = alphaBucketCount
+            invalidate()
+        }
+
+    /**
+     * 拖尾保留比例 (每帧把上一帧画面保留的比例, 范围 [0, 0.99], 0 表示关闭拖尾)
+     * 开启拖尾后同样的视觉密度只需要更少的粒子
+     */
+    var trailFade: Float
+        get() = mRenderer.trailFade
+        set(trailFade) {
+            mRenderer.trailFade = trailFade
+            invalidate()
+        }
+
+    /**
+     * 目标帧率 (跳过中间的垂直同步, 不模拟也不刷新, 粒子速度不变; 0 表示跟随屏幕刷新率)
+     * 例如 120Hz 屏幕上设置为 60 或 30, 粒子效果的开销约为原来的一半或四分之一
+     */
+    var targetFps: Int
+        get() = this.mTargetFps
+        set(targetFps) {
+            this.mTargetFps = targetFps.coerceAtLeast(0)
+            mLastSimulatedFrameTimeNanos = 0L
+        }
+
+    /**
+     * 并行模拟阈值 (粒子数量不少于该值时, 把粒子分块在 ForkJoinPool 中多线程并行模拟, 否则单线程模拟)
+     */
+    var parallelThreshold: Int
+        get() = mEngine.parallelThreshold
+        set(parallelThreshold) {
+            mEngine.parallelThreshold = parallelThreshold
+        }
+
+    /**
+     * 是否在后台线程模拟 (UI线程只负责绘制最新发布的快照)
+     */
+    var asyncSimulation: Boolean
+        get() = this.mAsyncSimulation
+        set(asyncSimulation) {
+            if (this.mAsyncSimulation == asyncSimulation) {
+                return
+            }
+            this.mAsyncSimulation = asyncSimulation
+            if (asyncSimulation) {
+                if (mRunning) {
+                    startSimulationThread()
+                }
+            } else {
+                stopSimulationThread()
+            }
         }
 
     /**
-     * 颜色列表
+     * 窗口失去焦点时是否暂停 (例如被对话框覆盖), 默认不暂停
      */
-//    var colorList: List<ParticleMultiColor>?
-//        get() = this.mParticleMultiColorList
-//        set(colorList) {
-//            this.mParticleMultiColorList = colorList
-//        }
+    var pauseOnWindowFocusLost: Boolean
+        get() = this.mPauseOnWindowFocusLost
+        set(pauseOnWindowFocusLost) {
+            this.mPauseOnWindowFocusLost = pauseOnWindowFocusLost
+            updateSimulationState()
+        }
 
     /**
-     * 刷新
+     * 是否根据每帧 (模拟 + 绘制) 耗时自动调节粒子数量
+     * 关闭时恢复为按密度计算的粒子数量 (开启时从按密度计算的粒子数量开始调节)
+     */
+    var adaptiveParticleCount: Boolean
+        get() = this.mAdaptiveParticleCount
+        set(adaptiveParticleCount) {
+            if (this.mAdaptiveParticleCount == adaptiveParticleCount) {
+                return
+            }
+            this.mAdaptiveParticleCount = adaptiveParticleCount
+            mGovernor.reset()
+            applyParticleCount(true)
+        }
+
+    /**
+     * 粒子密度 (每平方dp的粒子数量, 粒子数量 = 发射环面积 * 密度, 0 表示固定粒子数量)
+     */
+    var particleDensity: Float
+        get() = this.mParticleDensity
+        set(particleDensity) {
+            this.mParticleDensity = particleDensity.coerceAtLeast(0F)
+            updateDensityParticleCount()
+        }
+
+    /**
+     * 按密度计算粒子数量时的上限
+     */
+    var densityMaxParticleCount: Int
+        get() = this.mDensityMaxCount
+        set(densityMaxParticleCount) {
+            this.mDensityMaxCount = densityMaxParticleCount.coerceAtLeast(0)
+            updateDensityParticleCount()
+        }
+
+    /**
+     * 自动调节粒子数量时 最小粒子数量
+     */
+    var minParticleCount: Int
+        get() = mGovernor.minCount
+        set(minParticleCount) {
+            mGovernor.minCount = minParticleCount.coerceAtLeast(0)
+            if (mGovernor.maxCount < mGovernor.minCount) {
+                mGovernor.maxCount = mGovernor.minCount
+            }
+        }
+
+    /**
+     * 自动调节粒子数量时 最大粒子数量
+     * 没有设置时为按密度计算的粒子数量 (关闭密度时为 6000), 设置后优先于密度, 调节器可以增加到该数量
+     */
+    var maxParticleCount: Int
+        get() = mGovernor.maxCount
+        set(maxParticleCount) {
+            mCustomMaxParticleCount = true
+            mGovernor.maxCount = maxParticleCount.coerceAtLeast(mGovernor.minCount)
+            if (mAdaptiveParticleCount) {
+                mEngine.ensureCapacity(mGovernor.maxCount)
+            }
+        }
+
+    /**
+     * 自动调节粒子数量时 每帧 (模拟 + 绘制) 目标耗时 (毫秒)
+     */
+    var targetFrameTimeMillis: Float
+        get() = mTargetFrameTimeNanos.toFloat() / NANOS_PER_MILLISECOND
+        set(targetFrameTimeMillis) {
+            mTargetFrameTimeNanos = (targetFrameTimeMillis * NANOS_PER_MILLISECOND).toLong()
+        }
+
+    /**
+     * 是否启用动画 (为 false 时暂停模拟并保留粒子状态, 为 true 时在可见的情况下继续)
+     */
+    var animationEnabled: Boolean
+        get() = this.mAnimationEnabled
+        set(animationEnabled) {
+            this.mAnimationEnabled = animationEnabled
+            updateSimulationState()
+        }
+
+    /**
+     * 当前粒子数量
+     */
+    val particleCount: Int
+        get() = mEngine.activeCount
+
+    /**
+     * 颜色列表 (按权重随机分配给粒子, 为 null 或为空时使用 [color])
+     */
+    var colorList: List<ParticleMultiColor>?
+        get() = this.mParticleMultiColorList
+        set(colorList) {
+            this.mParticleMultiColorList = colorList
+            applyColors()
+        }
+
+    /**
+     * 按弧长把发射路径均匀采样为 位置 + 向外法线 查找表并交给粒子引擎 (只在设置路径时采样一次, 之后粒子重生只需查表)
+     * 法线由切线旋转 90° 得到, 按每个轮廓的环绕方向 (有向面积的符号) 统一为指向轮廓外侧
+     *
+     * @param path 发射路径 (View 坐标系)
+     */
+    private fun applyEmitterPath(path: Path?) {
+        if (path == null) {
+            mEngine.clearEmitterShape()
+            return
+        }
+
+        val measure = PathMeasure(path, false)
+        val contourLengths = ArrayList<Float>()
+        var totalLength = 0F
+
+        do {
+            contourLengths.add(measure.length)
+            totalLength += measure.length
+        } while (measure.nextContour())
+        if (totalLength <= 0F) {
+            mEngine.clearEmitterShape()
+            return
+        }
+
+        val count = EMITTER_TABLE_SIZE
+        val x = FloatArray(count)
+        val y = FloatArray(count)
+        val normalX = FloatArray(count)
+        val normalY = FloatArray(count)
+        val position = FloatArray(2)
+        val tangent = FloatArray(2)
+        var index = 0
+        var contourStartLength = 0F
+
+        measure.setPath(path, false)
+        for (contour in contourLengths.indices) {
+            val contourLength = contourLengths[contour]
+            val contourEndLength = contourStartLength + contourLength
+            val contourStartIndex = index
+            val lastContour = contour == contourLengths.lastIndex
+
+            // 第 i 个采样点位于总弧长的 (i + 0.5) / count 处
+            while (index < count && (lastContour || (index + 0.5F) * totalLength / count < contourEndLength)) {
+                val distance = ((index + 0.5F) * totalLength / count - contourStartLength).coerceIn(0F, contourLength)
+
+                measure.getPosTan(distance, position, tangent)
+                x[index] = position[0]
+                y[index] = position[1]
+                // 屏幕坐标系 (Y轴向下) 中顺时针轮廓的外侧法线为 (ty, -tx)
+                normalX[index] = tangent[1]
+                normalY[index] = -tangent[0]
+                ++index
+            }
+
+            // 有向面积为负 (逆时针) 时法线取反
+            var area = 0F
+
+            for (i in contourStartIndex until index) {
+                val next = if (i + 1 < index) i + 1 else contourStartIndex
+
+                area += x[i] * y[next] - x[next] * y[i]
+            }
+            if (area < 0F) {
+                for (i in contourStartIndex until index) {
+                    normalX[i] = -normalX[i]
+                    normalY[i] = -normalY[i]
+                }
+            }
+            contourStartLength = contourEndLength
+            measure.nextContour()
+        }
+        mEngine.setEmitterShape(x, y, normalX, normalY)
+    }
+
+    /**
+     * 音频帧缓冲 (由播放器的 Visualizer 或解码线程写入, 振幅控制粒子发射数量和速度, 低频控制发射扩散, 为 null 时不响应音频)
+     */
+    var audioBuffer: ParticleAudioBuffer?
+        get() = this.mAudioBuffer
+        set(audioBuffer) {
+            this.mAudioBuffer = audioBuffer
+        }
+
+    /**
+     * 是否在 onSaveInstanceState 中保存粒子状态 (默认关闭, 需要设置 id, 屏幕旋转等配置变化重建后按新尺寸缩放恢复, 不重新开始).
+     * 最多保存 300 个等间隔抽取的粒子 (量化后约 5KB), 其余粒子恢复时重新生成稳定状态
+     */
+    var saveParticleState: Boolean
+        get() = this.mSaveParticleState
+        set(saveParticleState) {
+            this.mSaveParticleState = saveParticleState
+        }
+
+    /**
+     * 性能指标监听器 (每绘制一帧回调一次, 为 null 时不统计)
+     */
+    var frameMetricsListener: OnFrameMetricsListener?
+        get() = this.mFrameMetricsListener
+        set(frameMetricsListener) {
+            this.mFrameMetricsListener = frameMetricsListener
+            mUpdateTimePercentile.reset()
+            mDrawTimePercentile.reset()
+            mLastTickTimeNanos = 0L
+            mPendingLateTickCount = 0
+            mTotalLateTickCount = 0L
+            mLastTotalRespawnCount = -1L
+        }
+
+    /**
+     * 自定义发射路径 (View 坐标系, 例如封面四周的圆角矩形, 心形, 文字轮廓; 为 null 时从扩散圆(内圆)发射)
+     * 设置时按弧长采样一次, 粒子沿路径法线向外发散, 重生耗时和路径复杂度无关. 修改路径后需要重新设置
+     */
+    var emitterPath: Path?
+        get() = this.mEmitterPath
+        set(emitterPath) {
+            this.mEmitterPath = emitterPath?.let { Path(it) }
+            applyEmitterPath(this.mEmitterPath)
+        }
+
+    /**
+     * 随机种子 (不为 null 时每次重新初始化所有粒子前设置, 相同种子和尺寸得到相同的粒子动画, 便于复现和截图对比)
+     */
+    var randomSeed: Long?
+        get() = this.mRandomSeed
+        set(randomSeed) {
+            this.mRandomSeed = randomSeed
+            refresh()
+        }
+
+    /**
+     * 刷新 (重新初始化所有粒子)
      */
     @AnyThread
     fun refresh() = runOnUiThread {
+        mReinitRequested = true
         requestLayout()
     }
 
-}
-
-/**
- * 粒子实体类
- */
-private data class Particle(
-
-    /** X轴坐标 */
-    var x: Float,
+    /**
+     * 性能指标监听器
+     */
+    interface OnFrameMetricsListener {
 
-    /** Y轴坐标 */
-    var y: Float,
+        /**
+         * 每绘制一帧回调一次 (UI线程)
+         *
+         * @param metrics 本帧性能指标 (每帧复用同一个对象, 不能在回调之外持有)
+         */
+        fun onFrameMetrics(metrics: ParticleFrameMetrics)
 
-    /** 粒子速度 */
-    var speed: Float,
+    }
 
-    /** 粒子发散的角度(弧度值) 弧度方向: 以X轴(正轴)为起点, 顺时针为角度增加方向 */
-    var angle: Double,
+    companion object {
 
-    /** 当前移动距离 */
-    var offset: Float,
+        /**
+         * 所有 ParticleDiffuseView 共享的每帧 (模拟 + 绘制) 耗时预算 (毫秒, 0 表示不限制)
+         * 自动调节粒子数量时, 每个 View 的目标耗时不超过 预算 / 正在运行的 View 数量
+         */
+        @JvmStatic
+        var sharedFrameBudgetMillis: Float
+            get() = ParticleFrameTicker.frameBudgetNanos.toFloat() / NANOS_PER_MILLISECOND
+            set(sharedFrameBudgetMillis) {
+                ParticleFrameTicker.frameBudgetNanos = (sharedFrameBudgetMillis * NANOS_PER_MILLISECOND).toLong().coerceAtLeast(0L)
+            }
 
-    /** 最大移动距离 */
-    var maxOffset: Float
+    }
 
-)
\ No newline at end of file
+}